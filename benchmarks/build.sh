@@ -0,0 +1,66 @@
+#!/bin/sh
+# Build the benchmarks, so they can be run without an IDE.
+#
+#   1. compile the application into out/app
+#   2. compile the benchmarks into out/bench, running the JMH annotation processor
+#   3. write out/jmh, a script that runs org.openjdk.jmh.Main with the right classpath
+#
+# Usage:
+#   JAVA_HOME=/path/to/jdk JAVAFX=/path/to/javafx-sdk/lib JMH=/path/to/jmh-jars benchmarks/build.sh
+#   benchmarks/out/jmh -prof gc TicTacToeBenchmark
+#
+# JAVA_HOME must be JDK 21 or later (the server uses virtual threads).
+# JAVAFX is the lib directory of the JavaFX SDK.
+# JMH is a directory with jmh-core, jmh-generator-annprocess, jopt-simple
+# and commons-math3 jars.
+# Set MONOCLE=/path/to/monocle.jar to run the JavaFX benchmarks without a display.
+#
+# Arguments to out/jmh are JMH options, such as a benchmark name or -prof gc.
+set -e
+
+HERE=$(cd "$(dirname "$0")" && pwd)
+SRC=$HERE/../src
+OUT=$HERE/out
+JDK=${JAVA_HOME:?set JAVA_HOME to a JDK}
+FX=${JAVAFX:?set JAVAFX to the JavaFX SDK lib directory}
+JMHLIB=${JMH:?set JMH to a directory of JMH jars}
+
+PROCESSOR=
+for jar in "$JMHLIB"/jmh-core*.jar "$JMHLIB"/jmh-generator-annprocess*.jar; do
+	PROCESSOR=$PROCESSOR${PROCESSOR:+:}$jar
+done
+
+rm -rf "$OUT"
+mkdir -p "$OUT/app" "$OUT/bench"
+
+echo "Compiling the application"
+cd "$SRC"
+"$JDK/bin/javac" -d "$OUT/app" -cp "$FX/*:." $(find . -name '*.java')
+for fxml in $(find . -name '*.fxml'); do
+	mkdir -p "$OUT/app/$(dirname "$fxml")"
+	cp "$fxml" "$OUT/app/$fxml"
+done
+
+echo "Compiling the benchmarks"
+cd "$HERE"
+"$JDK/bin/javac" -d "$OUT/bench" -cp "$OUT/app:$FX/*:$JMHLIB/*" -processorpath "$PROCESSOR" \
+	$(find src -name '*.java')
+
+CLASSPATH=$OUT/bench:$OUT/app:$FX/*:$JMHLIB/*
+HEADLESS=
+if [ -n "$MONOCLE" ]; then
+	cp "$MONOCLE" "$OUT/monocle.jar"
+	CLASSPATH=$CLASSPATH:$OUT/monocle.jar
+	HEADLESS="-jvmArgsAppend \"-Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw\""
+fi
+
+cat > "$OUT/jmh" <<RUNNER
+#!/bin/sh
+# Arguments are JMH options, such as a benchmark name or -prof gc
+exec "$JDK/bin/java" -cp "$CLASSPATH" org.openjdk.jmh.Main $HEADLESS "\$@"
+RUNNER
+chmod +x "$OUT/jmh"
+
+echo
+echo "Run the benchmarks with $OUT/jmh"
+echo "Startup benchmark: java -cp $OUT/bench benchmark.StartupBenchmark (see README.md)"
@@ -0,0 +1,48 @@
+package benchmark;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import javafx.application.Platform;
+
+/**
+ * Start the JavaFX toolkit once and run code on the FX application thread.
+ * Use the Monocle headless platform to run without a display:
+ * <pre>
+ * -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw
+ * </pre>
+ */
+public final class FxThread {
+	private static boolean started = false;
+
+	private FxThread() { }
+
+	/** Start the JavaFX toolkit, if not already started. */
+	public static synchronized void start() throws InterruptedException {
+		if (started) return;
+		CountDownLatch latch = new CountDownLatch(1);
+		Platform.startup(latch::countDown);
+		Platform.setImplicitExit(false);
+		latch.await();
+		started = true;
+	}
+
+	/**
+	 * Run code on the FX application thread and wait for the result.
+	 * @param task the code to run
+	 * @return the value returned by task
+	 */
+	public static <T> T call(Callable<T> task) throws InterruptedException, ExecutionException {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Platform.runLater(() -> {
+			try {
+				result.complete(task.call());
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result.get();
+	}
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import guessinggame.GuessResult;
+import guessinggame.GuessingGame;
+
+/**
+ * Throughput of GuessingGame.guess() and evaluate() with valid and invalid input.
+ * The String methods are the API used by the JavaFX controller.
+ * The primitive methods do not create objects unless the message is used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuessingGameBenchmark {
+	private GuessingGame game;
+
+	@Setup
+	public void setup() {
+		game = new GuessingGame(1000);
+	}
+
+	@Benchmark
+	public boolean validGuess() {
+		return game.guess("500");
+	}
+
+	@Benchmark
+	public boolean invalidGuess() {
+		return game.guess("five hundred");
+	}
+
+	@Benchmark
+	public boolean outOfRangeGuess() {
+		return game.guess("5000");
+	}
+
+	@Benchmark
+	public GuessResult primitiveGuess() {
+		return game.evaluate(500L);
+	}
+
+	@Benchmark
+	public GuessResult parsedInvalidGuess() {
+		return game.evaluate("five hundred");
+	}
+
+	@Benchmark
+	public String validGuessWithMessage() {
+		game.evaluate(500L);
+		return game.getMessage();
+	}
+}
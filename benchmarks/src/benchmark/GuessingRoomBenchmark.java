@@ -0,0 +1,72 @@
+package benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import guessinggame.GuessResult;
+import guessinggame.GuessingGame;
+import guessinggame.GuessingRoom;
+
+/**
+ * Guesses per microsecond when many threads guess in the same room.
+ * Compare with a single GuessingGame shared with synchronized,
+ * which is how a room would work without GuessingRoom.
+ *
+ * Run with different numbers of threads, for example:
+ * <pre>
+ * for t in 1 2 4 8 16 32 64; do java ... org.openjdk.jmh.Main GuessingRoomBenchmark -t $t; done
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuessingRoomBenchmark {
+	private static final int UPPER_BOUND = 1000;
+	private GuessingRoom room;
+	private GuessingGame sharedGame;
+
+	/** Each thread is a different player. */
+	@State(Scope.Thread)
+	public static class PlayerState {
+		GuessingRoom.Guesser guesser;
+
+		@Setup
+		public void setup(GuessingRoomBenchmark benchmark) {
+			guesser = benchmark.room.join(Thread.currentThread().getName());
+		}
+	}
+
+	@Setup
+	public void setup() {
+		room = new GuessingRoom(UPPER_BOUND, 42);
+		sharedGame = new GuessingGame(UPPER_BOUND);
+	}
+
+	@Benchmark
+	public GuessResult room(PlayerState player) {
+		long guess = ThreadLocalRandom.current().nextInt(UPPER_BOUND) + 1;
+		return room.guess(player.guesser, guess);
+	}
+
+	@Benchmark
+	public GuessResult synchronizedGame() {
+		long guess = ThreadLocalRandom.current().nextInt(UPPER_BOUND) + 1;
+		synchronized (sharedGame) {
+			return sharedGame.evaluate(guess);
+		}
+	}
+}
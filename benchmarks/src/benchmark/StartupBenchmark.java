@@ -0,0 +1,202 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launch the application many times and report the time to the first frame,
+ * for cold starts and for starts with an application class data sharing
+ * (AppCDS) archive made by launcher/build.sh.
+ *
+ * This is not a JMH benchmark, since each launch must be a new JVM.
+ * Each run starts Main with -Dstartup.profile and -Dstartup.exit, so the
+ * app writes its StartupProfiler report to a CSV file and exits after the
+ * first pulse. The time to first frame is the time from JVM start to that
+ * pulse. The time to launch the process and exit is also reported.
+ * Cold runs use -Xshare:off, so they do not use the default CDS archive of
+ * the JDK or of the launcher's runtime image either. The gain of the archived
+ * runs is the gain of class data sharing as a whole.
+ * Cold and archived runs are alternated, so both see the same machine load.
+ *
+ * Usage:
+ * <pre>
+ * java -cp ../bench-bin benchmark.StartupBenchmark -cp app classpath [options]
+ *   -runs n          launches of each kind (default 10)
+ *   -java path       java executable (default: the one running this)
+ *   -archive file    AppCDS archive to compare with cold starts
+ *   -scene name      open this game at startup, e.g. tictactoe
+ *   -jvm "args"      more JVM arguments, e.g. --module-path for JavaFX
+ *   -display         use the real display instead of headless Monocle
+ * </pre>
+ * Headless runs need monocle.jar in the app classpath.
+ */
+public class StartupBenchmark {
+	/** Longest time to wait for one launch. */
+	private static final long TIMEOUT_SECONDS = 60;
+	/**
+	 * Options to run without a display. The exports let Monocle on the classpath
+	 * use JavaFX modules in a runtime image. If JavaFX is on the classpath too,
+	 * the JVM only warns that the modules are unknown.
+	 */
+	private static final String[] HEADLESS = {
+			"--add-exports", "javafx.graphics/com.sun.glass.ui=ALL-UNNAMED",
+			"--add-exports", "javafx.graphics/com.sun.glass.events=ALL-UNNAMED",
+			"--add-exports", "javafx.graphics/com.sun.javafx.util=ALL-UNNAMED",
+			"--add-exports", "javafx.base/com.sun.javafx.logging=ALL-UNNAMED",
+			"-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw" };
+
+	private String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+	private String classpath;
+	private String archive;
+	private String scene;
+	private List<String> jvmArgs = new ArrayList<>();
+	private boolean headless = true;
+	private int runs = 10;
+
+	/** Results of the launches of one kind. */
+	static class Results {
+		final String name;
+		final List<Double> firstFrameMillis = new ArrayList<>();
+		final List<Double> processMillis = new ArrayList<>();
+		int failures;
+
+		Results(String name) {
+			this.name = name;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		StartupBenchmark benchmark = new StartupBenchmark();
+		for(int k=0; k<args.length; k++) {
+			switch (args[k]) {
+			case "-cp": benchmark.classpath = args[++k]; break;
+			case "-java": benchmark.java = args[++k]; break;
+			case "-archive": benchmark.archive = args[++k]; break;
+			case "-scene": benchmark.scene = args[++k]; break;
+			case "-jvm": benchmark.jvmArgs.addAll(Arrays.asList(args[++k].trim().split("\\s+"))); break;
+			case "-display": benchmark.headless = false; break;
+			case "-runs": benchmark.runs = Integer.parseInt(args[++k]); break;
+			default:
+				System.err.println("Unknown option "+args[k]);
+				System.exit(1);
+			}
+		}
+		if (benchmark.classpath == null) {
+			System.err.println("Usage: StartupBenchmark -cp classpath [-runs n] [-java path] [-archive app.jsa] [-scene name] [-jvm \"args\"] [-display]");
+			System.exit(1);
+		}
+		benchmark.run();
+	}
+
+	public void run() throws IOException, InterruptedException {
+		Results cold = new Results("cold");
+		Results archived = (archive == null) ? null : new Results("archived");
+		for(int k=0; k<runs; k++) {
+			launch(cold, null);
+			if (archived != null) launch(archived, archive);
+		}
+		System.out.printf("%d runs each%s%n", runs, (scene == null) ? "" : ", opening "+scene);
+		System.out.printf("%-9s %6s %9s %9s %9s %9s %11s%n",
+				"", "failed", "min ms", "p50 ms", "p90 ms", "max ms", "process ms");
+		report(cold);
+		if (archived != null) report(archived);
+	}
+
+	/**
+	 * Launch the app once and record its time to first frame.
+	 * @param results where to save the times
+	 * @param sharedArchive AppCDS archive to use, or null for a cold start without any CDS archive
+	 */
+	void launch(Results results, String sharedArchive) throws IOException, InterruptedException {
+		Path profile = Files.createTempFile("startup", ".csv");
+		Files.delete(profile); // so the profiler writes the header
+		Path output = Files.createTempFile("startup", ".log");
+		List<String> command = new ArrayList<>();
+		command.add(java);
+		if (sharedArchive != null) command.add("-XX:SharedArchiveFile="+sharedArchive);
+		else command.add("-Xshare:off");
+		command.addAll(jvmArgs);
+		if (headless) command.addAll(Arrays.asList(HEADLESS));
+		command.add("-Dstartup.profile="+profile);
+		command.add("-Dstartup.exit=true");
+		if (scene != null) command.add("-Dstartup.scene="+scene);
+		command.add("-cp");
+		command.add(classpath);
+		command.add("Main");
+		try {
+			long start = System.nanoTime();
+			Process process = new ProcessBuilder(command)
+					.redirectErrorStream(true)
+					.redirectOutput(output.toFile())
+					.start();
+			if (! process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+				fail(results, "timeout", output);
+				return;
+			}
+			double processMillis = (System.nanoTime() - start) / 1.0E6;
+			double firstFrame = readFirstFrame(profile);
+			if (firstFrame < 0) {
+				fail(results, "no first pulse", output);
+				return;
+			}
+			results.firstFrameMillis.add(firstFrame);
+			results.processMillis.add(processMillis);
+		} finally {
+			Files.deleteIfExists(profile);
+			Files.deleteIfExists(output);
+		}
+	}
+
+	/** @return elapsed time of the last "first pulse" row in the profile, or -1 */
+	static double readFirstFrame(Path profile) throws IOException {
+		if (! Files.exists(profile)) return -1;
+		double firstFrame = -1;
+		// columns are run,elapsed_ms,phase_ms,phase
+		for(String line : Files.readAllLines(profile, StandardCharsets.UTF_8)) {
+			String[] fields = line.split(",", 4);
+			if (fields.length == 4 && fields[3].startsWith("first pulse")) firstFrame = Double.parseDouble(fields[1]);
+		}
+		return firstFrame;
+	}
+
+	/** Count a failed launch and show the end of its output, to see why. */
+	private void fail(Results results, String reason, Path output) throws IOException {
+		results.failures++;
+		System.err.printf("%s launch failed (%s). Output:%n", results.name, reason);
+		List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+		for(String line : lines.subList(Math.max(0, lines.size()-10), lines.size())) System.err.println("  "+line);
+	}
+
+	private static void report(Results results) {
+		double[] times = sorted(results.firstFrameMillis);
+		double[] process = sorted(results.processMillis);
+		if (times.length == 0) {
+			System.out.printf("%-9s %6d%n", results.name, results.failures);
+			return;
+		}
+		System.out.printf("%-9s %6d %9.1f %9.1f %9.1f %9.1f %11.1f%n", results.name, results.failures,
+				times[0], percentile(times, 0.5), percentile(times, 0.9), times[times.length-1],
+				percentile(process, 0.5));
+	}
+
+	private static double[] sorted(List<Double> values) {
+		double[] array = new double[values.size()];
+		for(int k=0; k<array.length; k++) array[k] = values.get(k);
+		Arrays.sort(array);
+		return array;
+	}
+
+	/** @return the value at or below which a fraction p of the sorted values fall */
+	private static double percentile(double[] sorted, double p) {
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, index)];
+	}
+}
@@ -0,0 +1,141 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tictactoe.Player;
+import tictactoe.TicTacToeGame;
+
+/**
+ * Throughput of the TicTacToeGame model methods on several board sizes.
+ * The game creates its Board view, so the JavaFX toolkit is started,
+ * but the board is never shown.
+ *
+ * The board for winner(), canMoveTo() and boardIsFull() is half full
+ * with no winner, which is the common case during a game.
+ *
+ * Only startNewGame needs a board filled again before each call, so that
+ * setup is in its own state, HalfFullGame. The other benchmarks are not
+ * slowed by per-invocation setup, which would swamp nanosecond operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicTacToeBenchmark {
+	@Param({"3", "4", "15"})
+	int size;
+
+	/** Game with half of the board full. */
+	private TicTacToeGame game;
+	/** Game used for playGame. */
+	private TicTacToeGame scratch;
+	/** Cells to play in playGame, in order. */
+	private int[] order;
+	private int emptyCol;
+	private int emptyRow;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		FxThread.start();
+		int winLength = Math.min(size, 5);
+		game = new TicTacToeGame(size, winLength);
+		scratch = new TicTacToeGame(size, winLength);
+		order = drawOrder(size);
+		// play half the moves of a drawn game
+		for(int k=0; k<order.length/2; k++) play(game, order[k]);
+		int empty = order[order.length/2];
+		emptyCol = empty % size;
+		emptyRow = empty / size;
+	}
+
+	/**
+	 * Order of cells that fills the board without making
+	 * a line of 3 or more: columns in pairs, shifted each row.
+	 */
+	static int[] drawOrder(int size) {
+		int[] cells = new int[size*size];
+		int n = 0;
+		for(int row=0; row<size; row++) {
+			for(int col=0; col<size; col++) cells[n++] = row*size + (col + 2*(row % 2)) % size;
+		}
+		return cells;
+	}
+
+	private static void play(TicTacToeGame game, int cell) {
+		int size = game.getPieces().getSize();
+		Player player = game.getNextPlayer();
+		if (game.canMoveTo(player, cell % size, cell / size))
+			game.moveTo(player, cell % size, cell / size);
+	}
+
+	/** A game that is half full before each call, for startNewGame. */
+	@State(Scope.Thread)
+	public static class HalfFullGame {
+		private TicTacToeGame game;
+		private int[] order;
+
+		@Setup(Level.Trial)
+		public void setup(TicTacToeBenchmark benchmark) {
+			game = new TicTacToeGame(benchmark.size, Math.min(benchmark.size, 5));
+			order = benchmark.order;
+		}
+
+		@Setup(Level.Invocation)
+		public void fill() {
+			// startNewGame has something to remove
+			for(int k=0; k<order.length/2; k++) play(game, order[k]);
+		}
+	}
+
+	/**
+	 * Start a new game, clearing a half full board.
+	 * The board is filled before each call. The fill is not timed, but
+	 * per-call setup adds overhead, so compare this with itself, not with
+	 * the other benchmarks.
+	 */
+	@Benchmark
+	public void startNewGame(HalfFullGame halfFull) {
+		halfFull.game.startNewGame();
+	}
+
+	/** Play a game until it is over, including startNewGame. One op is a whole game. */
+	@Benchmark
+	public Player playGame() {
+		scratch.startNewGame();
+		for(int cell : order) {
+			if (scratch.isGameOver()) break;
+			play(scratch, cell);
+		}
+		return scratch.winner();
+	}
+
+	@Benchmark
+	public Player winner() {
+		return game.winner();
+	}
+
+	@Benchmark
+	public boolean canMoveTo() {
+		return game.canMoveTo(game.getNextPlayer(), emptyCol, emptyRow);
+	}
+
+	@Benchmark
+	public boolean boardIsFull() {
+		return game.boardIsFull();
+	}
+}
@@ -0,0 +1,46 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmark.FxThread;
+import javafx.scene.Scene;
+
+/**
+ * Time to load a game's FXML and build its Scene using StageManager.makeScene.
+ * This is the work done the first time a game is shown.
+ * Scenes are built on the FX application thread, as in the application.
+ *
+ * This class is in package util so it can call makeScene.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SceneBenchmark {
+	@Param({"tictactoe", "guessinggame"})
+	String sceneName;
+
+	@Setup
+	public void setup() throws Exception {
+		FxThread.start();
+	}
+
+	@Benchmark
+	public Scene makeScene() throws Exception {
+		return FxThread.call(() -> StageManager.getInstance().makeScene(sceneName));
+	}
+}
@@ -0,0 +1,88 @@
+#!/bin/sh
+# Build a fast-start launcher for the games.
+#
+#   1. compile the application into out/app.jar
+#   2. jlink a runtime image with only the modules the app uses,
+#      including a CDS archive of the JDK and JavaFX classes
+#   3. run the app once to train an AppCDS archive of the app's classes
+#      (-XX:ArchiveClassesAtExit), opening a game so its classes are included
+#   4. write out/multigame, a script that starts the app with the image and archive
+#
+# Usage:
+#   JAVA_HOME=/path/to/jdk JAVAFX=/path/to/javafx-jmods launcher/build.sh
+#
+# JAVA_HOME must be JDK 21 or later (the server uses virtual threads).
+# JAVAFX is the directory of JavaFX jmods (the separate "jmods" download, not the
+# SDK). jlink needs the jmods, since the SDK's jars do not contain the native
+# libraries that JavaFX needs to start.
+# Set MONOCLE=/path/to/monocle.jar to run the training run without a display.
+#
+# Arguments to out/multigame are JVM options, since the app is configured with
+# system properties, e.g. out/multigame -Dtictactoe.thinkMillis=500
+#
+# The archive records the path of app.jar, so build again if out/ is moved.
+set -e
+
+HERE=$(cd "$(dirname "$0")" && pwd)
+SRC=$HERE/../src
+OUT=$HERE/out
+JDK=${JAVA_HOME:?set JAVA_HOME to a JDK}
+FX=${JAVAFX:?set JAVAFX to the JavaFX jmods directory}
+if [ ! -f "$FX/javafx.graphics.jmod" ]; then
+	echo "$FX has no javafx.graphics.jmod. Set JAVAFX to the JavaFX jmods, not the SDK lib directory." >&2
+	exit 1
+fi
+MODULES=java.base,java.desktop,java.logging,java.management,jdk.jfr,javafx.controls,javafx.fxml
+
+rm -rf "$OUT"
+mkdir -p "$OUT/classes"
+
+echo "Compiling"
+cd "$SRC"
+"$JDK/bin/javac" -d "$OUT/classes" --module-path "$FX" --add-modules javafx.controls,javafx.fxml \
+	$(find . -name '*.java')
+for fxml in $(find . -name '*.fxml'); do
+	mkdir -p "$OUT/classes/$(dirname "$fxml")"
+	cp "$fxml" "$OUT/classes/$fxml"
+done
+"$JDK/bin/jar" --create --file "$OUT/app.jar" -C "$OUT/classes" .
+rm -rf "$OUT/classes"
+
+echo "Linking runtime image"
+# not compressed: decompressing classes would make startup slower
+"$JDK/bin/jlink" --module-path "$JDK/jmods:$FX" --add-modules $MODULES \
+	--strip-debug --no-header-files --no-man-pages \
+	--generate-cds-archive --output "$OUT/image"
+
+CLASSPATH=$OUT/app.jar
+EXPORTS=
+HEADLESS=
+if [ -n "$MONOCLE" ]; then
+	cp "$MONOCLE" "$OUT/monocle.jar"
+	CLASSPATH=$CLASSPATH:$OUT/monocle.jar
+	# Monocle is on the classpath, but uses internal packages of the JavaFX modules in the image
+	EXPORTS="--add-exports javafx.graphics/com.sun.glass.ui=ALL-UNNAMED \
+		--add-exports javafx.graphics/com.sun.glass.events=ALL-UNNAMED \
+		--add-exports javafx.graphics/com.sun.javafx.util=ALL-UNNAMED \
+		--add-exports javafx.base/com.sun.javafx.logging=ALL-UNNAMED"
+	HEADLESS="-Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw"
+fi
+
+echo "Training run"
+"$OUT/image/bin/java" -XX:ArchiveClassesAtExit="$OUT/app.jsa" $EXPORTS $HEADLESS \
+	-Dstartup.profile=true -Dstartup.exit=true -Dstartup.scene=tictactoe \
+	-cp "$CLASSPATH" Main \
+	|| echo "The training run failed, so the archive may not have all classes"
+
+# The launcher must use the same classpath as the training run, or the archive is not used.
+cat > "$OUT/multigame" <<LAUNCHER
+#!/bin/sh
+# Arguments are JVM options, such as -Dtictactoe.record=games.ttgr
+exec "$OUT/image/bin/java" -XX:SharedArchiveFile="$OUT/app.jsa" $EXPORTS -cp "$CLASSPATH" "\$@" Main
+LAUNCHER
+chmod +x "$OUT/multigame"
+
+echo
+echo "Start the games with $OUT/multigame"
+echo "Compare startup with and without the archive (see benchmarks/README.md):"
+echo "  java -cp bench-bin benchmark.StartupBenchmark -java $OUT/image/bin/java -cp $CLASSPATH -archive $OUT/app.jsa"
@@ -6,9 +6,13 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import util.StageManager;
+import util.StartupProfiler;
+import util.events.FxmlLoadEvent;
 
 /**
  * Start JavaFX and choose a game to play.
+ * To open a game at once, run with -Dstartup.scene=tictactoe
+ * (or another scene name).
  * 
  * @author jim
  */
@@ -16,17 +20,26 @@ public class Main extends javafx.application.Application {
 	final String fxmlfile = "main.fxml";
 
 	public void start(Stage stage) throws IOException {
+		StartupProfiler.mark("JavaFX started");
 		// StageManager keeps a reference to the stage and switches scenes 
 		StageManager stageManager = StageManager.getInstance();
 		stageManager.setStage(stage);
 		
 		Parent root = initComponents();
+		StartupProfiler.mark("load main.fxml");
 		Scene scene = new Scene(root);
 		// save reference to this scene so we can come back to it later
 		stageManager.register("main", scene);
 		
+		String firstScene = System.getProperty("startup.scene");
+		// if no game is opened at startup, the main scene is the last thing to profile when exiting
+		StartupProfiler.markFirstPulse(scene, "first pulse of main", firstScene == null && StartupProfiler.EXIT);
 		stage.setScene(scene);
 		stage.show();
+		StartupProfiler.mark("Stage.show");
+		if (firstScene != null) stageManager.showScene(firstScene);
+		// load the games in the background while the user chooses one
+		stageManager.preloadAll();
 	}
 	
 	public Parent initComponents() throws IOException {
@@ -37,13 +50,15 @@ public class Main extends javafx.application.Application {
 		}
 		// this is so we can get a reference to the controller
 		FXMLLoader loader = new FXMLLoader(fxmlurl);
-		Parent root = loader.load();
+		Parent root = FxmlLoadEvent.load(loader);
 		//MainController controller = loader.getController();
 		return root;
 	}
 
 	
 	public static void main(String[] args) {
+		// time from JVM start to here is class loading and JVM startup
+		StartupProfiler.mark("main");
 		launch(args);
 	}
 }
@@ -4,6 +4,7 @@ import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SeparatorMenuItem;
 import util.StageManager;
+import util.StartupProfiler;
 
 /**
  * Main controller changes the scene or quits.
@@ -23,7 +24,7 @@ public class MainController {
 	
 	@FXML
 	public void initialize() {
-		
+		StartupProfiler.mark("parse main.fxml");
 		// add games to the menu
 		MenuItem game1 = new MenuItem("TicTacToe");
 		game1.setOnAction( (e) -> showScene("tictactoe") );
@@ -33,6 +34,7 @@ public class MainController {
 		// anything to clean up before exit?
 		exit.setOnAction((e) -> System.exit(0));
 		gameMenu.getItems().addAll(game1, game2, new SeparatorMenuItem(), exit);
+		StartupProfiler.mark("MainController.initialize");
 	}
 	
 	/**
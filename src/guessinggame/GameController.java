@@ -2,6 +2,8 @@ package guessinggame;
 
 import javax.swing.JOptionPane;
 import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
@@ -48,10 +50,24 @@ public class GameController {
 	Menu gameMenu;            // first menu in menubar
 	MenuItem menuItem = null;
 	
+	/** Holds the current game, so it outlives this controller. */
+	private final ObjectProperty<GuessingGame> model;
+	
 	public GameController( ) {
 		// Its bad design for Controller to create Model objects, but
 		// JavaFX doesn't give us an easy way to inject a model into the controller.	
-		game = new GuessingGame();
+		this(new SimpleObjectProperty<>(new GuessingGame()));
+	}
+	
+	/**
+	 * Create a controller for the game in a property. The FXMLLoader's
+	 * controller factory uses this, so a new view can continue a game.
+	 * When a new game is started, it is put in the property.
+	 * @param model holder of the game to play
+	 */
+	public GameController(ObjectProperty<GuessingGame> model) {
+		this.model = model;
+		this.game = model.get();
 	}
 	
 	/**
@@ -120,6 +136,7 @@ public class GameController {
 		// create a new game and get hint
 		int upperBound = 2 * game.getUpperBound();
 		game = new GuessingGame(upperBound);
+		model.set(game);
 		inputField.setDisable(false);
 		initialize();
 	}
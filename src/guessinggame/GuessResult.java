@@ -0,0 +1,17 @@
+package guessinggame;
+
+/**
+ * Result of a guess in a GuessingGame.
+ */
+public enum GuessResult {
+	/** The guess is less than the secret. */
+	TOO_SMALL,
+	/** The guess is greater than the secret. */
+	TOO_LARGE,
+	/** The guess is not between 1 and the upper bound. */
+	OUT_OF_RANGE,
+	/** The guess is the secret. */
+	CORRECT,
+	/** The input is not a number. The guess is not counted. */
+	INVALID;
+}
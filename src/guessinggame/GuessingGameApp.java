@@ -4,10 +4,13 @@ import java.io.IOException;
 import java.net.URL;
 
 import javafx.application.Application;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import util.events.FxmlLoadEvent;
 
 /**
  * Main class for starting the application.
@@ -18,6 +21,8 @@ import javafx.stage.Stage;
  */
 public class GuessingGameApp extends Application {
 	public static final String UI_FORM = "guessinggame/GameUI.fxml";
+	/** The game being played, kept when the view is discarded. */
+	private final ObjectProperty<GuessingGame> game = new SimpleObjectProperty<>(new GuessingGame());
 
 	/**
 	 * Select the scene to display and start JavaFX.
@@ -38,11 +43,14 @@ public class GuessingGameApp extends Application {
 
 	/**
 	 * Create the scene for GuessingGame app.
+	 * If this was called before, the new scene continues the same game.
 	 */
 	public Parent initComponents() {
 		URL form = this.getClass().getClassLoader().getResource(UI_FORM);
 		try {
-			Parent root = FXMLLoader.load(form);
+			FXMLLoader loader = new FXMLLoader(form);
+			loader.setControllerFactory( (type) -> new GameController(game) );
+			Parent root = FxmlLoadEvent.load(loader);
 			return root;
 		} catch (IOException e) {
 			// TODO write a better catch block
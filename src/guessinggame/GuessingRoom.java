@@ -0,0 +1,148 @@
+package guessinggame;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A guessing game where many players guess the same secret at once.
+ * The first player to guess the secret wins.
+ *
+ * A room is thread-safe and does not use locks. The room has no
+ * mutable state for the last guess or message: each guess returns
+ * its result to the caller, and the caller can ask for a hint.
+ * Guesses are counted in LongAdders, which spread updates from
+ * different threads over different cells instead of all threads
+ * updating one variable. The winner is decided with compareAndSet,
+ * so exactly one player wins even if several guess right at once.
+ */
+public class GuessingRoom {
+	private final int secret;
+	private final int upperBound;
+	/** Guesses by all players. */
+	private final LongAdder guesses = new LongAdder();
+	/** The first player to guess the secret, or null. */
+	private final AtomicReference<Guesser> winner = new AtomicReference<>();
+
+	/** A player in the room. A Guesser can be used by several threads. */
+	public static final class Guesser {
+		private final String name;
+		private final LongAdder guesses = new LongAdder();
+
+		private Guesser(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/** @return number of guesses by this player */
+		public long getCount() {
+			return guesses.sum();
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Create a room with a random secret.
+	 * @param upperBound the upper limit for the secret number. Must be positive.
+	 */
+	public GuessingRoom(int upperBound) {
+		this(upperBound, System.currentTimeMillis());
+	}
+
+	/**
+	 * Create a room with a secret chosen by a seed, so a test or
+	 * benchmark can be repeated.
+	 * @param upperBound the upper limit for the secret number. Must be positive.
+	 * @param seed seed for choosing the secret
+	 */
+	public GuessingRoom(int upperBound, long seed) {
+		this.upperBound = upperBound;
+		this.secret = new Random(seed).nextInt(upperBound) + 1;
+	}
+
+	/**
+	 * Add a player to the room.
+	 * @param name name of the player
+	 * @return the player, for use in guess()
+	 */
+	public Guesser join(String name) {
+		return new Guesser(name);
+	}
+
+	/**
+	 * Evaluate a guess by a player.
+	 * @param guesser the player who guesses
+	 * @param guess the guessed number
+	 * @return result of the guess. CORRECT is returned even if another
+	 *     player already won; use getWinner() to see who won.
+	 */
+	public GuessResult guess(Guesser guesser, long guess) {
+		guesses.increment();
+		guesser.guesses.increment();
+		if (guess < 1 || guess > upperBound) return GuessResult.OUT_OF_RANGE;
+		if (guess < secret) return GuessResult.TOO_SMALL;
+		if (guess > secret) return GuessResult.TOO_LARGE;
+		// only the first correct guess sets the winner. Read first, so later
+		// correct guesses do not write to the shared variable.
+		if (winner.get() == null) winner.compareAndSet(null, guesser);
+		return GuessResult.CORRECT;
+	}
+
+	/**
+	 * Evaluate a player's input without throwing an exception for bad input.
+	 * Invalid input is not counted as a guess.
+	 * @param guesser the player who guesses
+	 * @param value the player's input
+	 * @return result of the guess, or GuessResult.INVALID if value is not a number
+	 */
+	public GuessResult guess(Guesser guesser, CharSequence value) {
+		long guess = GuessingGame.parseGuess(value);
+		if (guess == GuessingGame.INVALID_GUESS) return GuessResult.INVALID;
+		return guess(guesser, guess);
+	}
+
+	/**
+	 * Make a hint for a player about their guess.
+	 * @param result the result returned by guess()
+	 * @param guess the number that was guessed
+	 * @return a message for the player
+	 */
+	public String hint(GuessResult result, long guess) {
+		switch (result) {
+		case OUT_OF_RANGE: return "Impossible! The secret is 1 - "+upperBound;
+		case TOO_SMALL: return guess + " is too small.";
+		case TOO_LARGE: return guess + " is too large.";
+		case CORRECT:
+			Guesser first = winner.get();
+			return "Right! " + first + " guessed it first.";
+		default: return "That is not a valid guess.";
+		}
+	}
+
+	/** @return the first player who guessed the secret, or null */
+	public Guesser getWinner() {
+		return winner.get();
+	}
+
+	/** @return true if a player has guessed the secret */
+	public boolean isWon() {
+		return winner.get() != null;
+	}
+
+	/** @return number of guesses by all players */
+	public long getCount() {
+		return guesses.sum();
+	}
+
+	/** @return the upper bound on the secret number */
+	public int getUpperBound() {
+		return upperBound;
+	}
+}
@@ -0,0 +1,288 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A server that hosts many tic-tac-toe and guessing game sessions
+ * without a display. It listens on a local TCP port and uses a line protocol.
+ * Each command is one line, and the server replies with one line that
+ * starts with "OK" or "ERR".
+ *
+ * <pre>
+ *   NEW TICTACTOE [size [winLength]]   reply: OK id
+ *   NEW GUESS [upperBound]             reply: OK id
+ *   MOVE id col row                    tic-tac-toe move
+ *   BOARD id                           tic-tac-toe board
+ *   GUESS id number                    guess in a guessing game
+ *   COUNT id                           number of guesses
+ *   END id                             end a session
+ *   QUIT                               close the connection
+ * </pre>
+ * Each connection is handled by its own virtual thread (requires Java 21),
+ * so thousands of connections do not need thousands of platform threads.
+ * Sessions are kept in a ConcurrentHashMap, and each session has its own
+ * lock, so there is no lock shared by all sessions.
+ * A session ends with END or when the connection that created it closes.
+ *
+ * Sessions that are not used for a while are parked in a SessionStore,
+ * which keeps a snapshot of each one outside the Java heap, and are
+ * restored when a command for them arrives.
+ *
+ * Usage: java server.GameServer [port [idleSeconds [maxParked]]]
+ */
+public class GameServer {
+	public static final int DEFAULT_PORT = 7777;
+	/** Largest tic-tac-toe board a client can ask for. */
+	public static final int MAX_BOARD_SIZE = 100;
+	/**
+	 * Size of a record for a parked session. A tic-tac-toe record is a 3 byte
+	 * header, 6 bytes of position and 2 bytes per move, so this holds up to 59 moves.
+	 */
+	public static final int RECORD_SIZE = 128;
+	/** Size of a record for a longer game. Holds up to 251 moves, so any game on a 15x15 board fits. */
+	public static final int LARGE_RECORD_SIZE = 512;
+	/** Number of large records for each record, since most parked games are short. */
+	private static final int RECORDS_PER_LARGE_RECORD = 8;
+
+	private final ServerSocket serverSocket;
+	private final Map<Long,Session> sessions = new ConcurrentHashMap<>();
+	private final AtomicLong nextId = new AtomicLong(1);
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	/** Idle sessions, or null if sessions are never parked. */
+	private final SessionStore store;
+	/** Idle sessions that do not fit in store, or null if sessions are never parked. */
+	private final SessionStore largeStore;
+	/** Number of idle sessions that the last look for idle sessions could not park. */
+	private volatile int unparkedCount;
+	private final long idleNanos;
+
+	/**
+	 * Create a server on the loopback address that never parks sessions.
+	 * @param port the port to listen on, or 0 for any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public GameServer(int port) throws IOException {
+		this(port, 0, 0);
+	}
+
+	/**
+	 * Create a server on the loopback address.
+	 * @param port the port to listen on, or 0 for any free port
+	 * @param idleSeconds park sessions that are not used for this long
+	 * @param maxParked largest number of parked sessions, or 0 to never park sessions
+	 * @throws IOException if the port cannot be opened
+	 */
+	public GameServer(int port, int idleSeconds, int maxParked) throws IOException {
+		serverSocket = new ServerSocket(port, 1000, InetAddress.getLoopbackAddress());
+		store = (maxParked > 0) ? new SessionStore(maxParked, RECORD_SIZE) : null;
+		largeStore = (maxParked > 0) ?
+				new SessionStore(Math.max(1, maxParked / RECORDS_PER_LARGE_RECORD), LARGE_RECORD_SIZE) : null;
+		idleNanos = idleSeconds * 1_000_000_000L;
+		if (store != null) {
+			Thread parker = new Thread(this::parkIdleSessions, "session-parker");
+			parker.setDaemon(true);
+			parker.start();
+		}
+	}
+
+	/** @return the port the server listens on */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/** @return number of active sessions, not including parked sessions */
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	/** @return number of parked sessions */
+	public int getParkedCount() {
+		return (store == null) ? 0 : store.size() + largeStore.size();
+	}
+
+	/**
+	 * Get the number of idle sessions that stay on the heap, because their
+	 * snapshot is too big for a record or the store is full.
+	 * @return number of idle sessions the last look for idle sessions could not park
+	 */
+	public int getUnparkedCount() {
+		return unparkedCount;
+	}
+
+	/** Look for idle sessions and park them, until the server is closed. */
+	private void parkIdleSessions() {
+		long interval = Math.max(idleNanos / 4, 10_000_000L);
+		while (! serverSocket.isClosed()) {
+			int unparked = 0;
+			for(Session session : sessions.values()) {
+				if (! session.isIdle(idleNanos)) continue;
+				// most sessions fit in a small record; longer games use a large one
+				if (! session.park(store, sessions, idleNanos)
+						&& ! session.park(largeStore, sessions, idleNanos)) unparked++;
+			}
+			if (unparked > 0 && unparkedCount == 0)
+				Logger.getLogger("GameServer").warning(unparked+" idle sessions could not be parked");
+			unparkedCount = unparked;
+			try {
+				Thread.sleep(interval / 1_000_000L);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Find a session, restoring it if it is parked.
+	 * @return the session, or null if there is no session with this id
+	 */
+	private Session findSession(Long id) {
+		Session session = sessions.get(id);
+		if (session != null || store == null) return session;
+		// only one thread restores a session; others wait for it
+		return sessions.computeIfAbsent(id, this::restoreSession);
+	}
+
+	/** @return a parked session, removed from its store, or null if it is not parked */
+	private Session restoreSession(Long id) {
+		Session session = store.take(id);
+		return (session != null) ? session : largeStore.take(id);
+	}
+
+	/** End a session, whether it is active or parked. */
+	private boolean endSession(Long id) {
+		Session session = sessions.remove(id);
+		boolean active = session != null;
+		// after end() returns, a park of this session is done, so its snapshot is in the store
+		if (active) session.end();
+		boolean parked = store != null && (store.remove(id) || largeStore.remove(id));
+		return active || parked;
+	}
+
+	/**
+	 * Accept connections until the server is closed.
+	 * Each connection is handled in a new virtual thread.
+	 */
+	public void serve() {
+		while (! serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				executor.submit(() -> handleConnection(socket));
+			} catch (IOException e) {
+				if (! serverSocket.isClosed()) System.err.println("accept failed: "+e.getMessage());
+			}
+		}
+	}
+
+	/** Stop accepting connections. */
+	public void close() throws IOException {
+		serverSocket.close();
+		executor.shutdown();
+	}
+
+	/** Read commands from a connection and write the replies. */
+	private void handleConnection(Socket socket) {
+		// sessions created by this connection, removed when it closes
+		List<Long> created = new ArrayList<>();
+		try (socket;
+			BufferedReader in = new BufferedReader(
+				new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			BufferedWriter out = new BufferedWriter(
+				new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+			socket.setTcpNoDelay(true);
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] args = line.trim().split("\\s+");
+				if (args[0].equals("QUIT")) break;
+				out.write(handleCommand(args, created));
+				out.newLine();
+				// only flush when no more commands are waiting, so pipelined commands share a write
+				if (! in.ready()) out.flush();
+			}
+		} catch (IOException e) {
+			// the client disconnected
+		} finally {
+			for(Long id : created) endSession(id);
+		}
+	}
+
+	/**
+	 * Run one command.
+	 * @param args words of the command line
+	 * @param created ids of sessions created by the connection
+	 * @return the reply
+	 */
+	String handleCommand(String[] args, List<Long> created) {
+		try {
+			switch (args[0]) {
+			case "NEW":
+				Session session = newSession(args);
+				sessions.put(session.getId(), session);
+				created.add(session.getId());
+				return "OK " + session.getId();
+			case "END":
+				Long id = Long.valueOf(Session.parseInt(args, 1, "session id"));
+				if (! endSession(id)) return "ERR no session " + id;
+				created.remove(id);
+				return "OK";
+			case "":
+				return "ERR empty command";
+			default:
+				if (args.length < 2) return "ERR missing session id";
+				Long sessionId = Long.valueOf(Session.parseInt(args, 1, "session id"));
+				while (true) {
+					Session target = findSession(sessionId);
+					if (target == null) return "ERR no session " + sessionId;
+					String reply = target.handle(args);
+					// null means the session was parked while we waited, so find it again
+					if (reply != null) return reply;
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			return "ERR " + e.getMessage();
+		}
+	}
+
+	private Session newSession(String[] args) {
+		if (args.length < 2) throw new IllegalArgumentException("missing game type");
+		long id = nextId.getAndIncrement();
+		switch (args[1]) {
+		case "TICTACTOE":
+			int size = (args.length > 2) ? Session.parseInt(args, 2, "size") : 3;
+			int winLength = (args.length > 3) ? Session.parseInt(args, 3, "win length") : Math.min(size, 5);
+			if (size > MAX_BOARD_SIZE) throw new IllegalArgumentException("size must be at most "+MAX_BOARD_SIZE);
+			return new TicTacToeSession(id, size, winLength);
+		case "GUESS":
+			int upperBound = (args.length > 2) ? Session.parseInt(args, 2, "upper bound") : 100;
+			if (upperBound < 1) throw new IllegalArgumentException("upper bound must be positive");
+			return new GuessingSession(id, upperBound);
+		default:
+			throw new IllegalArgumentException("unknown game "+args[1]);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int idleSeconds = (args.length > 1) ? Integer.parseInt(args[1]) : 60;
+		int maxParked = (args.length > 2) ? Integer.parseInt(args[2]) : 1_000_000;
+		GameServer server = new GameServer(port, idleSeconds, maxParked);
+		System.out.printf("Game server listening on port %d, parking sessions idle for %d sec\n",
+				server.getPort(), idleSeconds);
+		server.serve();
+	}
+}
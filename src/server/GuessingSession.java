@@ -0,0 +1,58 @@
+package server;
+
+import java.nio.ByteBuffer;
+
+import guessinggame.GuessingGame;
+
+/**
+ * A guessing game on the server.
+ *
+ * Commands:
+ * <pre>
+ *   GUESS id number   reply: OK RIGHT message | OK WRONG message
+ *   COUNT id          reply: OK number of guesses
+ * </pre>
+ */
+class GuessingSession extends Session {
+	private final GuessingGame game;
+
+	GuessingSession(long id, int upperBound) {
+		super(id);
+		this.game = new GuessingGame(upperBound);
+	}
+
+	/** Restore a session from a snapshot. */
+	GuessingSession(long id, ByteBuffer snapshot) {
+		super(id);
+		this.game = GuessingGame.readFrom(snapshot);
+	}
+
+	@Override
+	byte getType() {
+		return GUESS;
+	}
+
+	@Override
+	int getSnapshotSize() {
+		return GuessingGame.SNAPSHOT_SIZE;
+	}
+
+	@Override
+	void writeTo(ByteBuffer buffer) {
+		game.writeTo(buffer);
+	}
+
+	@Override
+	String execute(String[] args) {
+		switch (args[0]) {
+		case "GUESS":
+			if (args.length < 3) return "ERR missing guess";
+			boolean right = game.guess(args[2]);
+			return (right ? "OK RIGHT " : "OK WRONG ") + game.getMessage();
+		case "COUNT":
+			return "OK " + game.getCount();
+		default:
+			return "ERR unknown command for guessing game: "+args[0];
+		}
+	}
+}
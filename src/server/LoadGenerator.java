@@ -0,0 +1,197 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+import tictactoe.engine.Bitboard;
+
+/**
+ * A client that plays many tic-tac-toe games on a GameServer at a
+ * target rate of moves and reports the latency of moves.
+ *
+ * Each connection runs in a virtual thread and plays random moves
+ * on its own session. Moves are sent on a fixed schedule, and latency
+ * is measured from the time a move was scheduled, not when it was sent,
+ * so a slow server is not hidden by the client waiting for it.
+ *
+ * Usage:
+ * <pre>
+ * java server.LoadGenerator [-port n] [-connections n] [-rate movesPerSecond]
+ *     [-seconds n] [-size n] [-win k]
+ * </pre>
+ */
+public class LoadGenerator {
+	private int port = GameServer.DEFAULT_PORT;
+	private int connections = 100;
+	private int rate = 10000;
+	private int seconds = 10;
+	private int size = 15;
+	private int winLength = 5;
+	/** Counted down by each connection when it is ready to play. */
+	private CountDownLatch connected;
+	/** Released when all connections are ready. */
+	private final CountDownLatch started = new CountDownLatch(1);
+	private volatile long start;
+
+	/** Latencies measured by one connection, in nanoseconds. */
+	static class Latencies {
+		long[] values = new long[1024];
+		int count;
+		long errors;
+
+		void add(long nanos) {
+			if (count == values.length) values = Arrays.copyOf(values, 2*count);
+			values[count++] = nanos;
+		}
+	}
+
+	/** Run all connections and wait for them to finish. */
+	Latencies run() throws InterruptedException {
+		long interval = (long)(1.0E9 * connections / rate);
+		List<Future<Latencies>> results = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(int k=0; k<connections; k++) {
+				int index = k;
+				results.add(executor.submit(() -> play(index, interval)));
+			}
+			// start the clock after all connections are open
+			connected.await();
+			start = System.nanoTime();
+			started.countDown();
+		}
+		Latencies total = new Latencies();
+		for(Future<Latencies> result : results) {
+			try {
+				Latencies latencies = result.get();
+				for(int k=0; k<latencies.count; k++) total.add(latencies.values[k]);
+				total.errors += latencies.errors;
+			} catch (ExecutionException e) {
+				System.err.println("connection failed: "+e.getCause());
+				total.errors++;
+			}
+		}
+		return total;
+	}
+
+	/** Play games on one connection until the end time. */
+	private Latencies play(int index, long interval) throws IOException, InterruptedException {
+		Latencies latencies = new Latencies();
+		Random random = new Random(index);
+		Bitboard board = new Bitboard(size, winLength);
+		Socket socket;
+		try {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		} finally {
+			connected.countDown();
+		}
+		try (socket;
+			BufferedReader in = new BufferedReader(
+				new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			BufferedWriter out = new BufferedWriter(
+				new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+			socket.setTcpNoDelay(true);
+			String id = newGame(in, out, board);
+			started.await();
+			// spread the connections over one interval
+			long next = start + interval * index / connections;
+			long end = start + seconds * 1_000_000_000L;
+			while (next < end) {
+				long wait = next - System.nanoTime();
+				if (wait > 0) LockSupport.parkNanos(wait);
+				int cell;
+				do cell = random.nextInt(board.getCellCount()); while (! board.isEmpty(cell));
+				board.play(cell);
+				String reply = send(in, out, "MOVE "+id+" "+(cell % size)+" "+(cell / size));
+				latencies.add(System.nanoTime() - next);
+				next += interval;
+				if (! reply.startsWith("OK")) latencies.errors++;
+				if (! reply.startsWith("OK NEXT")) {
+					send(in, out, "END "+id);
+					id = newGame(in, out, board);
+				}
+			}
+			send(in, out, "QUIT");
+		}
+		return latencies;
+	}
+
+	private String newGame(BufferedReader in, BufferedWriter out, Bitboard board) throws IOException {
+		board.clear();
+		String reply = send(in, out, "NEW TICTACTOE "+size+" "+winLength);
+		if (! reply.startsWith("OK ")) throw new IOException("cannot start game: "+reply);
+		return reply.substring(3);
+	}
+
+	private static String send(BufferedReader in, BufferedWriter out, String command) throws IOException {
+		out.write(command);
+		out.newLine();
+		out.flush();
+		if (command.equals("QUIT")) return "";
+		String reply = in.readLine();
+		if (reply == null) throw new IOException("server closed the connection");
+		return reply;
+	}
+
+	/** Set options from command line arguments. */
+	private void parseArgs(String[] args) {
+		for(int k=0; k+1<args.length; k+=2) {
+			int value = Integer.parseInt(args[k+1]);
+			switch (args[k]) {
+			case "-port": port = value; break;
+			case "-connections": connections = value; break;
+			case "-rate": rate = value; break;
+			case "-seconds": seconds = value; break;
+			case "-size": size = value; break;
+			case "-win": winLength = value; break;
+			default:
+				System.err.println("Unknown option "+args[k]);
+				System.err.println("Usage: java server.LoadGenerator [-port n] [-connections n]"
+						+ " [-rate movesPerSecond] [-seconds n] [-size n] [-win k]");
+				System.exit(1);
+			}
+		}
+	}
+
+	/** @return the value at a percentile of sorted values, in microseconds */
+	private static double percentile(long[] sorted, int count, double percent) {
+		if (count == 0) return 0;
+		int index = (int)Math.min(count - 1, Math.ceil(percent / 100 * count) - 1);
+		return sorted[Math.max(0, index)] / 1000.0;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		LoadGenerator generator = new LoadGenerator();
+		generator.parseArgs(args);
+		System.out.printf("%d connections, %d moves/sec for %d sec, %dx%d board\n",
+				generator.connections, generator.rate, generator.seconds, generator.size, generator.size);
+		generator.connected = new CountDownLatch(generator.connections);
+		long begin = System.nanoTime();
+		Latencies latencies = generator.run();
+		double elapsed = (System.nanoTime() - generator.start) / 1.0E9;
+		System.out.printf("connected in %.2f sec\n", (generator.start - begin) / 1.0E9);
+		long[] sorted = Arrays.copyOf(latencies.values, latencies.count);
+		Arrays.sort(sorted);
+		int n = sorted.length;
+		System.out.printf("%d moves, %.0f moves/sec, %d errors\n",
+				n, n / elapsed, latencies.errors);
+		System.out.printf("latency usec: p50 %.0f  p99 %.0f  p99.9 %.0f  max %.0f\n",
+				percentile(sorted, n, 50), percentile(sorted, n, 99),
+				percentile(sorted, n, 99.9), percentile(sorted, n, 100));
+	}
+}
@@ -0,0 +1,94 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * A map from long keys to int values that stores primitives in two arrays,
+ * so an entry costs 12 bytes per slot instead of a node and two boxed values.
+ *
+ * The map uses open addressing with linear probing and has a fixed
+ * capacity. Key 0 is used to mark empty slots, so it cannot be a key.
+ * It is not thread-safe.
+ */
+class LongIntMap {
+	private final long[] keys;
+	private final int[] values;
+	private final int mask;
+	private int size;
+
+	/**
+	 * Create an empty map.
+	 * @param capacity largest number of entries. The table is twice that, rounded up to a power of 2.
+	 */
+	LongIntMap(int capacity) {
+		int length = Integer.highestOneBit(Math.max(2, 2*capacity - 1)) << 1;
+		keys = new long[length];
+		values = new int[length];
+		mask = length - 1;
+	}
+
+	private int slot(long key) {
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+
+	/** @return value for key, or -1 if the key is not in the map */
+	int get(long key) {
+		for(int index = slot(key); keys[index] != 0; index = (index + 1) & mask) {
+			if (keys[index] == key) return values[index];
+		}
+		return -1;
+	}
+
+	/**
+	 * Add or replace an entry.
+	 * @param key any value except 0
+	 * @param value the value
+	 * @throws IllegalStateException if the map is full
+	 */
+	void put(long key, int value) {
+		if (key == 0) throw new IllegalArgumentException("key cannot be 0");
+		int index = slot(key);
+		while (keys[index] != 0 && keys[index] != key) index = (index + 1) & mask;
+		if (keys[index] == 0) {
+			if (2*(size + 1) > keys.length) throw new IllegalStateException("map is full");
+			size++;
+		}
+		keys[index] = key;
+		values[index] = value;
+	}
+
+	/** @return value that was removed, or -1 if the key is not in the map */
+	int remove(long key) {
+		int index = slot(key);
+		while (keys[index] != key) {
+			if (keys[index] == 0) return -1;
+			index = (index + 1) & mask;
+		}
+		int value = values[index];
+		// move later entries of the same probe run back, so lookups do not stop early
+		int hole = index;
+		for(index = (index + 1) & mask; keys[index] != 0; index = (index + 1) & mask) {
+			int home = slot(keys[index]);
+			// move the entry if its home slot is not between the hole and where it is
+			if (((index - home) & mask) >= ((index - hole) & mask)) {
+				keys[hole] = keys[index];
+				values[hole] = values[index];
+				hole = index;
+			}
+		}
+		keys[hole] = 0;
+		size--;
+		return value;
+	}
+
+	/** @return number of entries */
+	int size() {
+		return size;
+	}
+
+	/** Remove all entries. */
+	void clear() {
+		Arrays.fill(keys, 0L);
+		size = 0;
+	}
+}
@@ -0,0 +1,144 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One game hosted by the server.
+ *
+ * Each session has its own lock, so commands for one session are
+ * run one at a time in the order they get the lock, while commands
+ * for different sessions run in parallel. There is no lock shared
+ * by all sessions.
+ * An idle session can be parked in a SessionStore, which saves a
+ * snapshot of it outside the heap. A parked Session object is not used
+ * again; the session is restored as a new object from the snapshot.
+ * A ReentrantLock is used instead of synchronized because a virtual
+ * thread that blocks inside synchronized pins its carrier thread.
+ */
+abstract class Session {
+	/** Type codes for snapshots. */
+	static final byte TICTACTOE = 1;
+	static final byte GUESS = 2;
+
+	private final long id;
+	private final ReentrantLock lock = new ReentrantLock();
+	/** Time of the last command, from System.nanoTime(). */
+	private volatile long lastUsed = System.nanoTime();
+	/** True after the session was saved in a store. Only changed with the lock held. */
+	private boolean parked;
+	/** True after the session was ended. Only changed with the lock held. */
+	private boolean ended;
+
+	Session(long id) {
+		this.id = id;
+	}
+
+	/** @return the session id sent to clients */
+	long getId() {
+		return id;
+	}
+
+	/**
+	 * Run a command on this session.
+	 * @param args the words of the command line. args[0] is the command
+	 *     and args[1] is the session id.
+	 * @return reply to send to the client, or null if the session was
+	 *     parked or ended and must be looked up again
+	 */
+	String handle(String[] args) {
+		lock.lock();
+		try {
+			if (parked || ended) return null;
+			lastUsed = System.nanoTime();
+			return execute(args);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param idleNanos how long the session must be unused
+	 * @return true if the session has not been used for idleNanos
+	 */
+	boolean isIdle(long idleNanos) {
+		return System.nanoTime() - lastUsed >= idleNanos;
+	}
+
+	/**
+	 * Save this session in a store and remove it from the active sessions,
+	 * if it has not been used recently and no command is running.
+	 * @param store where to save the session
+	 * @param sessions the active sessions
+	 * @param idleNanos how long the session must be unused
+	 * @return true if the session was parked
+	 */
+	boolean park(SessionStore store, Map<Long,Session> sessions, long idleNanos) {
+		if (! isIdle(idleNanos) || ! lock.tryLock()) return false;
+		try {
+			if (parked || ended || ! store.put(this)) return false;
+			// remove before unlocking, so a command waiting for the lock finds the session in the store
+			sessions.remove(id, this);
+			parked = true;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Mark this session as ended, so it is not parked or used again.
+	 * This waits for a command or park that is running, so a caller that
+	 * then removes the id from the store also removes a snapshot that
+	 * park just saved.
+	 */
+	void end() {
+		lock.lock();
+		try {
+			ended = true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** @return type code for the snapshot */
+	abstract byte getType();
+
+	/** @return number of bytes writeTo will write */
+	abstract int getSnapshotSize();
+
+	/** Write a snapshot of the game. Called with the lock held. */
+	abstract void writeTo(ByteBuffer buffer);
+
+	/**
+	 * Restore a session from a snapshot.
+	 * @param id the session id
+	 * @param type type code from getType()
+	 * @param buffer a buffer positioned at the snapshot
+	 * @return the restored session
+	 */
+	static Session readFrom(long id, byte type, ByteBuffer buffer) {
+		switch (type) {
+		case TICTACTOE: return new TicTacToeSession(id, buffer);
+		case GUESS: return new GuessingSession(id, buffer);
+		default: throw new IllegalArgumentException("unknown session type "+type);
+		}
+	}
+
+	/**
+	 * Run a command. Called with the lock held.
+	 * @return reply, starting with "OK" or "ERR"
+	 */
+	abstract String execute(String[] args);
+
+	/** @return parsed int, or throw IllegalArgumentException with a message for the client */
+	static int parseInt(String[] args, int index, String name) {
+		if (index >= args.length) throw new IllegalArgumentException("missing "+name);
+		try {
+			return Integer.parseInt(args[index]);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid "+name+" "+args[index]);
+		}
+	}
+}
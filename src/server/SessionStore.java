@@ -0,0 +1,161 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps snapshots of idle sessions outside of the Java heap.
+ *
+ * The store is a slab of fixed-size records in a direct buffer or
+ * a memory-mapped file. Each record is
+ * <pre>
+ *   short length, byte type, then the session's snapshot
+ * </pre>
+ * A parked session costs one record in the slab and one entry in a
+ * primitive map from session id to record number, about 16 bytes of heap.
+ * Free records are kept in an int stack.
+ *
+ * Sessions whose snapshot does not fit in a record are not parked.
+ * Parking and restoring a session use a lock for the store,
+ * but commands on active sessions never use it.
+ */
+class SessionStore {
+	/** Bytes before the snapshot in each record. */
+	static final int RECORD_HEADER = 3;
+
+	private final ByteBuffer slab;
+	private final int recordSize;
+	private final int capacity;
+	/** Session id to record number. */
+	private final LongIntMap records;
+	/** Numbers of unused records. */
+	private final int[] free;
+	private int freeCount;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Create a store in off-heap memory.
+	 * @param capacity largest number of sessions
+	 * @param recordSize bytes for each session, including a 3 byte header
+	 */
+	SessionStore(int capacity, int recordSize) {
+		this(ByteBuffer.allocateDirect(checkSize(capacity, recordSize)), capacity, recordSize);
+	}
+
+	/**
+	 * Create a store in a memory-mapped file, so parked sessions use
+	 * the page cache and can be paged out instead of using memory.
+	 * The file is replaced.
+	 * @param file the file for the slab
+	 * @param capacity largest number of sessions
+	 * @param recordSize bytes for each session, including a 3 byte header
+	 * @throws IOException if the file cannot be created
+	 */
+	SessionStore(Path file, int capacity, int recordSize) throws IOException {
+		this(map(file, checkSize(capacity, recordSize)), capacity, recordSize);
+	}
+
+	private SessionStore(ByteBuffer slab, int capacity, int recordSize) {
+		this.slab = slab;
+		this.capacity = capacity;
+		this.recordSize = recordSize;
+		this.records = new LongIntMap(capacity);
+		this.free = new int[capacity];
+		// hand out low record numbers first
+		for(int k=0; k<capacity; k++) free[k] = capacity - 1 - k;
+		this.freeCount = capacity;
+	}
+
+	private static int checkSize(int capacity, int recordSize) {
+		if (capacity < 1 || recordSize <= RECORD_HEADER)
+			throw new IllegalArgumentException("capacity and record size must be positive");
+		if ((long)capacity * recordSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("store must be smaller than 2GB");
+		return capacity * recordSize;
+	}
+
+	private static ByteBuffer map(Path file, int bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+		}
+	}
+
+	/**
+	 * Save a session.
+	 * @param session the session. The caller must hold its lock.
+	 * @return true if it was saved, false if the store is full or the snapshot is too big
+	 */
+	boolean put(Session session) {
+		int length = session.getSnapshotSize();
+		if (RECORD_HEADER + length > recordSize) return false;
+		lock.lock();
+		try {
+			if (freeCount == 0) return false;
+			int record = free[--freeCount];
+			ByteBuffer buffer = slab.slice(record * recordSize, recordSize);
+			buffer.putShort((short)length).put(session.getType());
+			session.writeTo(buffer);
+			records.put(session.getId(), record);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Restore a session and remove it from the store.
+	 * @param id the session id
+	 * @return the session, or null if it is not in the store
+	 */
+	Session take(long id) {
+		lock.lock();
+		try {
+			int record = records.remove(id);
+			if (record < 0) return null;
+			free[freeCount++] = record;
+			ByteBuffer buffer = slab.slice(record * recordSize, recordSize);
+			int length = buffer.getShort();
+			byte type = buffer.get();
+			return Session.readFrom(id, type, buffer.limit(RECORD_HEADER + length));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove a session without restoring it.
+	 * @return true if the session was in the store
+	 */
+	boolean remove(long id) {
+		lock.lock();
+		try {
+			int record = records.remove(id);
+			if (record < 0) return false;
+			free[freeCount++] = record;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** @return number of sessions in the store */
+	int size() {
+		lock.lock();
+		try {
+			return records.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** @return largest number of sessions */
+	int getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,78 @@
+package server;
+
+import java.nio.ByteBuffer;
+
+import tictactoe.Player;
+import tictactoe.engine.Position;
+
+/**
+ * A tic-tac-toe game on the server.
+ * The game state is an immutable Position, so no JavaFX classes are used,
+ * and the moves can be saved when the session is parked.
+ *
+ * Commands:
+ * <pre>
+ *   MOVE id col row   reply: OK NEXT player | OK WIN player | OK DRAW
+ *   BOARD id          reply: OK cells, one character per cell (X, O, or .)
+ * </pre>
+ */
+class TicTacToeSession extends Session {
+	private Position position;
+
+	TicTacToeSession(long id, int size, int winLength) {
+		super(id);
+		this.position = new Position(size, winLength);
+	}
+
+	/** Restore a session from a snapshot. */
+	TicTacToeSession(long id, ByteBuffer snapshot) {
+		super(id);
+		this.position = Position.readFrom(snapshot);
+	}
+
+	@Override
+	byte getType() {
+		return TICTACTOE;
+	}
+
+	@Override
+	int getSnapshotSize() {
+		return position.getSnapshotSize();
+	}
+
+	@Override
+	void writeTo(ByteBuffer buffer) {
+		position.writeTo(buffer);
+	}
+
+	@Override
+	String execute(String[] args) {
+		switch (args[0]) {
+		case "MOVE":
+			int col = parseInt(args, 2, "column");
+			int row = parseInt(args, 3, "row");
+			int size = position.getSize();
+			if (position.isGameOver()) return "ERR game over";
+			if (col < 0 || col >= size || row < 0 || row >= size || ! position.isEmpty(row*size + col))
+				return "ERR square is not empty";
+			position = position.play(col, row);
+			return "OK " + status();
+		case "BOARD":
+			StringBuilder cells = new StringBuilder(3 + position.getCellCount());
+			cells.append("OK ");
+			for(int cell=0; cell<position.getCellCount(); cell++) {
+				Player player = position.pieceAt(cell);
+				cells.append(player == Player.NONE ? '.' : player.text.charAt(0));
+			}
+			return cells.toString();
+		default:
+			return "ERR unknown command for tictactoe: "+args[0];
+		}
+	}
+
+	private String status() {
+		if (position.winner() != Player.NONE) return "WIN " + position.winner();
+		if (position.isFull()) return "DRAW";
+		return "NEXT " + position.nextPlayer();
+	}
+}
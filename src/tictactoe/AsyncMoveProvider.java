@@ -0,0 +1,132 @@
+package tictactoe;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.application.Platform;
+import tictactoe.engine.Bitboard;
+import tictactoe.engine.MoveStrategy;
+import tictactoe.engine.PonderingStrategy;
+
+/**
+ * Runs a computer player in a background thread, so the UI does not
+ * freeze while the computer thinks.
+ *
+ * The strategy searches a copy of the board until it is done or the time
+ * budget is used up, and the move is given to the caller on the FX thread
+ * with Platform.runLater. A request can be cancelled, e.g. when a new game
+ * is started, and then its move is never delivered.
+ *
+ * If the strategy is a PonderingStrategy, it ponders after each move it
+ * chooses, so it thinks during the human's turn. Cancelling stops pondering.
+ *
+ * The strategy can be replaced, such as when the board size changes,
+ * and the old one is shut down.
+ * The search thread has low priority and stops after it is idle for a
+ * while, so a discarded provider does not keep a thread alive.
+ * Methods of this class must be called on the FX application thread.
+ */
+public class AsyncMoveProvider {
+	/** Seconds an idle search thread waits for work before it stops. */
+	private static final long KEEP_ALIVE_SECONDS = 30;
+	/** The computer player. Only changed on the FX thread; each task uses the one it was given. */
+	private MoveStrategy strategy;
+	private final ThreadPoolExecutor executor;
+	private final long budgetNanos;
+	/** The request being searched, or null. */
+	private Request current;
+
+	/** One request for a move. cancelled is written on the FX thread and read by the search. */
+	private static class Request {
+		volatile boolean cancelled;
+	}
+
+	/**
+	 * Create a provider for a computer player.
+	 * @param strategy the computer player. It is only used by the search thread.
+	 * @param budgetMillis how long the strategy may think about a move
+	 */
+	public AsyncMoveProvider(MoveStrategy strategy, long budgetMillis) {
+		this.strategy = strategy;
+		this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		this.executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), (runnable) -> {
+					Thread thread = new Thread(runnable, "move-search");
+					thread.setDaemon(true);
+					// the FX thread should win when both want a CPU
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Start choosing a move in the background. A request that is
+	 * still running is cancelled.
+	 * @param board the position to move in. A copy is searched, so the
+	 *     caller may change the board.
+	 * @param onMove called on the FX thread with the chosen cell,
+	 *     unless the request is cancelled first
+	 */
+	public void requestMove(Bitboard board, IntConsumer onMove) {
+		cancel();
+		Bitboard position = new Bitboard(board);
+		Request request = new Request();
+		current = request;
+		MoveStrategy strategy = this.strategy;
+		executor.execute( () -> {
+			long deadline = System.nanoTime() + budgetNanos;
+			int cell;
+			try {
+				cell = strategy.selectMove(position,
+						() -> request.cancelled || System.nanoTime() - deadline > 0);
+			} catch (RuntimeException ex) {
+				Logger.getLogger("AsyncMoveProvider").log(Level.WARNING, "Computer player failed", ex);
+				cell = -1;
+			}
+			if (request.cancelled) return;
+			if (cell >= 0 && strategy instanceof PonderingStrategy) {
+				// think about the human's reply while the human does
+				Bitboard after = new Bitboard(position);
+				after.play(cell);
+				((PonderingStrategy) strategy).ponder(after);
+			}
+			final int move = cell;
+			Platform.runLater( () -> {
+				// the request may have been cancelled while this was waiting to run
+				if (request.cancelled || current != request) return;
+				current = null;
+				if (move >= 0) onMove.accept(move);
+			});
+		});
+	}
+
+	/** Stop the current request and pondering, if any. The request's move will not be delivered. */
+	public void cancel() {
+		if (current != null) current.cancelled = true;
+		current = null;
+		// in the search thread, so it runs after a search that may start pondering
+		if (strategy instanceof PonderingStrategy) executor.execute( ((PonderingStrategy) strategy)::stopPondering );
+	}
+
+	/**
+	 * Use a different computer player, such as for a new board size.
+	 * The current request is cancelled and the old player is shut down.
+	 * @param strategy the new computer player
+	 */
+	public void setStrategy(MoveStrategy strategy) {
+		cancel();
+		// in the search thread, after any search by the old player has stopped
+		executor.execute( this.strategy::shutdown );
+		this.strategy = strategy;
+	}
+
+	/** @return true if a move was requested and not delivered or cancelled yet */
+	public boolean isThinking() {
+		return current != null;
+	}
+}
@@ -2,19 +2,28 @@ package tictactoe;
 
 import javafx.geometry.Bounds;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 
 /**
  * A TicTacToe board.
  * This class provides a view of the board.
+ * 
+ * Each square has a Piece on top of it that is created with the board.
+ * A move is shown by changing the piece on the square, so no nodes are
+ * added or removed during a game.
+ * 
+ * For large boards use CanvasBoard, which doesn't need a node per square.
  */
-public class Board extends GridPane  {
+public class Board extends GridPane implements BoardView {
 	/** Size of squares on the board. */
 	public static final int TILESIZE = 100;
 	/** gap between rows and cols. May be zero. */
 	public static final double GAP = 2;
 	/** The actual squares on the board. */
 	private BoardSquare[][] board;
+	/** A piece for each square, hidden when the square is empty. */
+	private Piece[][] pieces;
 
 	/**
 	 * Create an empty tic tac toe board.
@@ -23,6 +32,7 @@ public class Board extends GridPane  {
 	public Board(int rows, int cols) {
 		// is this necessary? We can get the squares directly from GridPane.
 		board = new BoardSquare[rows][cols];
+		pieces = new Piece[rows][cols];
 		// for tic-tac-toe the squares are all same color
 		Color squareColor = Color.LIGHTGRAY; // nice boring color
 		// draw border around each square
@@ -38,6 +48,8 @@ public class Board extends GridPane  {
 				cell.setFill( squareColor );
 				board[row][col] = cell;
 				super.add( cell, col, row );
+				pieces[row][col] = new Piece(Player.NONE, TILESIZE);
+				super.add( pieces[row][col], col, row );
 				Bounds b = cell.getBoundsInParent();
 //				System.out.printf("Cell [%d,%d] has bounds x=[%.1f,%.1f] y=[%.1f,%.1f]\n", 
 //						row, col,
@@ -47,5 +59,32 @@ public class Board extends GridPane  {
 		// make the game board fit the cells. Don't forget hgap and vgap.
 		this.setPrefSize(cols * TILESIZE + (cols-1)*GAP, rows * TILESIZE + (rows-1)*GAP);
 		this.setMinSize(cols * TILESIZE + (cols-1)*GAP, rows * TILESIZE + (rows-1)*GAP);
-	}	
+	}
+	
+	@Override
+	public Region getView() {
+		return this;
+	}
+	
+	@Override
+	public void showPiece(int col, int row, Player player) {
+		pieces[row][col].setType(player);
+	}
+	
+	@Override
+	public void clearPieces() {
+		for(Piece[] row : pieces) {
+			for(Piece piece : row) piece.setType(Player.NONE);
+		}
+	}
+	
+	@Override
+	public void setOnCellClicked(CellHandler handler) {
+		for(BoardSquare[] row : board) {
+			for(BoardSquare square : row) {
+				square.setOnMouseClicked(
+					(event) -> handler.cellClicked(square.getColumn(), square.getRow()) );
+			}
+		}
+	}
 }
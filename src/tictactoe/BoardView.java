@@ -0,0 +1,41 @@
+package tictactoe;
+
+import javafx.scene.layout.Region;
+
+/**
+ * A view of a tic-tac-toe board.
+ * Board shows each square as a node, which is best for small boards.
+ * CanvasBoard draws all squares on one Canvas, for large boards.
+ * ViewportBoard only creates nodes for the visible squares, for
+ * boards too large to show all at once.
+ */
+public interface BoardView {
+	/** Called when the user clicks a square on the board. */
+	@FunctionalInterface
+	interface CellHandler {
+		void cellClicked(int col, int row);
+	}
+	
+	/**
+	 * Get the node to add to a scene.
+	 * @return a Region containing the board
+	 */
+	Region getView();
+	
+	/**
+	 * Show a player's piece on a square.
+	 * @param col column of the square
+	 * @param row row of the square
+	 * @param player the player to show, or Player.NONE to show an empty square
+	 */
+	void showPiece(int col, int row, Player player);
+	
+	/** Make all squares empty. */
+	void clearPieces();
+	
+	/**
+	 * Set the handler for clicks on squares.
+	 * @param handler invoked with the column and row of the square clicked
+	 */
+	void setOnCellClicked(CellHandler handler);
+}
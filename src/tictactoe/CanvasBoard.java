@@ -0,0 +1,121 @@
+package tictactoe;
+
+import java.util.Arrays;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+/**
+ * A view of a large board drawn on a single Canvas.
+ *
+ * Board uses two nodes per square and a mouse handler on each square,
+ * which is slow for boards with thousands of squares.
+ * CanvasBoard has only one node. A click is mapped to a square by
+ * dividing the mouse position by the square size, and after a move
+ * only the square that changed is redrawn.
+ *
+ * The Canvas covers the whole board, so for very large boards
+ * use ViewportBoard instead.
+ */
+public class CanvasBoard extends Pane implements BoardView {
+	/** Largest width or height of the board, in pixels. */
+	public static final double MAX_PIXELS = 800;
+	/** Smallest size of a square, in pixels. */
+	public static final double MIN_TILESIZE = 8;
+	/** Width of the lines between squares. */
+	public static final double GAP = 1;
+
+	private final int rows;
+	private final int cols;
+	/** Size of each square, without the gap. */
+	private final double tileSize;
+	private final Canvas canvas;
+	private final GraphicsContext gc;
+	/** Player shown on each square, by row*cols + col. */
+	private final Player[] shown;
+	private CellHandler handler;
+
+	/**
+	 * Create an empty board.
+	 * Squares are as large as will fit in MAX_PIXELS, up to Board.TILESIZE.
+	 */
+	public CanvasBoard(int rows, int cols) {
+		this.rows = rows;
+		this.cols = cols;
+		int n = Math.max(rows, cols);
+		this.tileSize = Math.max(MIN_TILESIZE, Math.min(Board.TILESIZE, MAX_PIXELS/n - GAP));
+		double width = cols * (tileSize + GAP) + GAP;
+		double height = rows * (tileSize + GAP) + GAP;
+		canvas = new Canvas(width, height);
+		gc = canvas.getGraphicsContext2D();
+		shown = new Player[rows*cols];
+		Arrays.fill(shown, Player.NONE);
+		super.getChildren().add(canvas);
+		this.setPrefSize(width, height);
+		this.setMinSize(width, height);
+
+		canvas.setOnMouseClicked( (event) -> {
+			int col = (int)((event.getX() - GAP) / (tileSize + GAP));
+			int row = (int)((event.getY() - GAP) / (tileSize + GAP));
+			if (handler != null && col >= 0 && col < cols && row >= 0 && row < rows)
+				handler.cellClicked(col, row);
+		});
+		drawAll();
+	}
+
+	/** Draw the grid lines and every square. */
+	private void drawAll() {
+		gc.setFill(Color.BLACK);
+		gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		for(int row=0; row<rows; row++) {
+			for(int col=0; col<cols; col++) drawSquare(col, row);
+		}
+	}
+
+	/** Draw one square and its piece. */
+	private void drawSquare(int col, int row) {
+		double x = GAP + col * (tileSize + GAP);
+		double y = GAP + row * (tileSize + GAP);
+		gc.setFill(Color.LIGHTGRAY);
+		gc.fillRect(x, y, tileSize, tileSize);
+		Player player = shown[row*cols + col];
+		if (player == Player.NONE) return;
+		// draw the piece with lines instead of text, which is faster
+		double margin = 0.15 * tileSize;
+		gc.setStroke(Color.BLACK);
+		gc.setLineWidth(Math.max(1, 0.08 * tileSize));
+		if (player == Player.X) {
+			gc.strokeLine(x + margin, y + margin, x + tileSize - margin, y + tileSize - margin);
+			gc.strokeLine(x + margin, y + tileSize - margin, x + tileSize - margin, y + margin);
+		}
+		else {
+			gc.strokeOval(x + margin, y + margin, tileSize - 2*margin, tileSize - 2*margin);
+		}
+	}
+
+	@Override
+	public Region getView() {
+		return this;
+	}
+
+	@Override
+	public void showPiece(int col, int row, Player player) {
+		if (shown[row*cols + col] == player) return;
+		shown[row*cols + col] = player;
+		drawSquare(col, row);
+	}
+
+	@Override
+	public void clearPieces() {
+		Arrays.fill(shown, Player.NONE);
+		drawAll();
+	}
+
+	@Override
+	public void setOnCellClicked(CellHandler handler) {
+		this.handler = handler;
+	}
+}
@@ -1,14 +1,35 @@
 package tictactoe;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.WeakChangeListener;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckMenuItem;
 import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
-import javafx.scene.input.MouseEvent;
+import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.control.Toggle;
+import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import tictactoe.engine.MonteCarloSearch;
+import tictactoe.engine.MoveStrategy;
+import tictactoe.engine.ParallelSolver;
+import tictactoe.engine.Tablebase;
+import tictactoe.record.GameRecordWriter;
 import util.StageManager;
 
 /**
@@ -16,6 +37,16 @@ import util.StageManager;
  * This class handles user input events.
  */
 public class GameController {
+	/** How long the computer may think about a move, in milliseconds. */
+	private static final int THINK_MILLIS = Integer.getInteger("tictactoe.thinkMillis", 1000);
+	/** Boards with more cells than this are played by Monte Carlo search instead of alpha-beta. */
+	private static final int MAX_SEARCH_CELLS = 16;
+	/** Playouts for a Monte Carlo move. A move that reuses a tree grown by pondering needs fewer. */
+	private static final int MCTS_PLAYOUTS = 100_000;
+	/** Tablebases named by -Dtictactoe.tablebase, for perfect play without search. */
+	private static final List<Tablebase> TABLEBASES = openTablebases(System.getProperty("tictactoe.tablebase"));
+	/** Board sizes the player can choose, as {size, win length}. */
+	private static final int[][] BOARD_SIZES = { {3,3}, {4,4}, {7,4}, {11,5}, {15,5}, {100,5} };
 	@FXML
 	private Label topLabel;
 	@FXML
@@ -26,38 +57,209 @@ public class GameController {
 	private Menu gameMenu;
 	
 	private TicTacToeGame game;
+	/** Menu items to choose which players the computer plays. */
+	private CheckMenuItem computerPlaysX;
+	private CheckMenuItem computerPlaysO;
+	/** Menu items to choose the board size. */
+	private final ToggleGroup sizes = new ToggleGroup();
+	/** The computer player, which thinks in a background thread. It belongs to the game, not this view. */
+	private AsyncMoveProvider computer;
+	/** Gets the game's computer player on the FX thread, or null to create one. */
+	private final Supplier<AsyncMoveProvider> computerSupplier;
 	
 
+	/** Update the status when the game ends. Weak, so a discarded view can be collected. */
+	private final ChangeListener<Boolean> gameOverListener = (observable,oldValue,newValue) -> updateGameStatus();
+
 	public GameController() {
-		// nothing to initialize yet.
+		this(null, null);
+	}
+	
+	/**
+	 * Create a controller for an existing game, so a new view can
+	 * continue the game that an old view was showing.
+	 * The computer player is shared by all views of the game, so a
+	 * move requested by an old view is cancelled by the new one.
+	 * The computer player is created on the FX thread, since
+	 * AsyncMoveProvider may only be used there.
+	 * @param game the game to show, or null to start a new game
+	 * @param computer gets the computer player for the game, or null to create one
+	 */
+	public GameController(TicTacToeGame game, Supplier<AsyncMoveProvider> computer) {
+		this.game = game;
+		this.computerSupplier = computer;
 	}
 	
+	/**
+	 * Create a computer player that suits the size of a game's board.
+	 * If a tablebase for the board was given with -Dtictactoe.tablebase,
+	 * moves are looked up in it. Other small boards are solved by alpha-beta
+	 * search, and large boards are played by Monte Carlo search, which ponders
+	 * during the human's turn.
+	 * @param game the game the computer plays
+	 * @return the computer player
+	 */
+	public static AsyncMoveProvider newComputer(TicTacToeGame game) {
+		return new AsyncMoveProvider(newStrategy(game), THINK_MILLIS);
+	}
+	
+	/** @return a tablebase or a search that suits the size of the game's board */
+	private static MoveStrategy newStrategy(TicTacToeGame game) {
+		for(Tablebase tablebase : TABLEBASES) {
+			if (tablebase.getSize() == game.getPieces().getSize()
+					&& tablebase.getWinLength() == game.getWinLength()) return tablebase;
+		}
+		// leave one core for the FX thread, so the UI stays smooth while the computer thinks
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		int cells = game.getPieces().getCellCount();
+		if (cells <= MAX_SEARCH_CELLS) return new ParallelSolver(cells, 16, threads);
+		MonteCarloSearch mcts = new MonteCarloSearch(threads);
+		mcts.setTimeBudget(THINK_MILLIS);
+		mcts.setPlayoutBudget(MCTS_PLAYOUTS);
+		return mcts;
+	}
+	
+	/**
+	 * Open the tablebase files made by TablebaseGenerator, such as
+	 * -Dtictactoe.tablebase=3x3.ttbb:4x4.ttbb
+	 * @param files file names separated by the path separator, or null
+	 * @return the tablebases that could be opened
+	 */
+	private static List<Tablebase> openTablebases(String files) {
+		List<Tablebase> tablebases = new ArrayList<>();
+		if (files == null) return tablebases;
+		for(String file : files.split(File.pathSeparator)) {
+			if (file.isEmpty()) continue;
+			try {
+				tablebases.add(Tablebase.open(Paths.get(file)));
+			} catch (IOException ex) {
+				Logger.getLogger("GameController").log(Level.WARNING, "Cannot read tablebase "+file, ex);
+			}
+		}
+		return tablebases;
+	}
+	
+	/**
+	 * Build the menus of this view. StageManager may call this in a background
+	 * thread, so it only creates nodes of this view. The game may be shown by
+	 * another view, so the view is connected to it on the FX thread by attach().
+	 */
 	@FXML
 	public void initialize() {
-		game = new TicTacToeGame(3);
-		Board board = game.getBoard();
-		// make the board size match the size of pane where it is shown
-		centerPane.getChildren().add(board);
-		centerPane.prefWidthProperty().bind(board.prefWidthProperty());
-		centerPane.prefHeightProperty().bind(board.prefHeightProperty());
-		
-		// Listen to each square for mouse click and invoke handleCellClicked()
-		EventHandler<MouseEvent> onMouseClick = this::handleCellClicked; // this is a reference to method handleCellClicked()
-		board.getChildren().forEach(child -> child.setOnMouseClicked(onMouseClick));
+		if (game == null) game = new TicTacToeGame(3);
 		// The "New Game" button action
 		newGameButton.setOnAction( this::handleNewGameEvent );
 		
+		// menu items to let the computer play either side
+		computerPlaysX = new CheckMenuItem("Computer plays X");
+		computerPlaysO = new CheckMenuItem("Computer plays O");
+		computerPlaysX.setOnAction( this::handleComputerPlaysEvent );
+		computerPlaysO.setOnAction( this::handleComputerPlaysEvent );
+		
+		// menu items to take back moves
+		MenuItem undoItem = new MenuItem("Undo");
+		undoItem.setOnAction( this::handleUndoEvent );
+		MenuItem redoItem = new MenuItem("Redo");
+		redoItem.setOnAction( this::handleRedoEvent );
+		
+		// menu to choose the board size. Big boards are played by Monte Carlo search.
+		Menu sizeMenu = new Menu("Board Size");
+		for(int[] boardSize : BOARD_SIZES) {
+			int size = boardSize[0];
+			int winLength = boardSize[1];
+			String text = (size == winLength) ? size+"x"+size : size+"x"+size+", "+winLength+" in a row";
+			RadioMenuItem sizeItem = new RadioMenuItem(text);
+			sizeItem.setToggleGroup(sizes);
+			sizeItem.setUserData(boardSize);
+			sizeItem.setOnAction( (e) -> setBoardSize(size, winLength) );
+			sizeMenu.getItems().add(sizeItem);
+		}
+		
 		// add a menu item to return to Main scene
 		MenuItem menuItem = new MenuItem("Back to Main");
-		menuItem.setOnAction( (e) -> StageManager.getInstance().showScene("main") );
-		gameMenu.getItems().add(menuItem);
+		menuItem.setOnAction( (e) -> {
+			computer.cancel();
+			StageManager.getInstance().showScene("main");
+		});
+		gameMenu.getItems().addAll(undoItem, redoItem, new SeparatorMenuItem(),
+				computerPlaysX, computerPlaysO, sizeMenu, new SeparatorMenuItem(), menuItem);
+		gameMenu.setOnShowing( (e) -> {
+			undoItem.setDisable(! game.canUndo());
+			redoItem.setDisable(! game.canRedo());
+		});
+		
+		// Platform.runLater runs tasks in order, so when this is called by
+		// StageManager's loader thread the view is attached before its Scene is made
+		if (Platform.isFxApplicationThread()) attach();
+		else Platform.runLater(this::attach);
+	}
+	
+	/**
+	 * Connect this view to the game: show its board, cancel a move requested
+	 * by an old view, and listen for the end of the game.
+	 * This changes the game, so it is called on the FX thread.
+	 */
+	private void attach() {
+		// if the game was shown by another view, make a new view of the board
+		if (game.getBoard().getView().getParent() != null) game.newBoard();
+		showBoard();
+		selectBoardSize();
+		
+		computer = (computerSupplier == null) ? newComputer(game) : computerSupplier.get();
+		// a move requested by a previous view of this game must not be played
+		computer.cancel();
+		
+		// record games if a file is given, e.g. -Dtictactoe.record=games.ttgr
+		String recordFile = System.getProperty("tictactoe.record");
+		if (recordFile != null && game.getRecorder() == null) {
+			try {
+				game.setRecorder(new GameRecordWriter(Paths.get(recordFile)));
+			} catch (IOException ex) {
+				Logger.getLogger("GameController").log(Level.WARNING, "Cannot record games to "+recordFile, ex);
+			}
+		}
 		
 		// Listen to TicTacToeGame for changes in status.
-		game.gameOver().addListener( (observable,oldValue,newValue)-> updateGameStatus());
+		game.gameOver().addListener(new WeakChangeListener<>(gameOverListener));
 		
 		updateGameStatus();
 	}
 	
+	/** Select the Board Size menu item for the size of the game's board. */
+	private void selectBoardSize() {
+		for(Toggle toggle : sizes.getToggles()) {
+			int[] boardSize = (int[]) toggle.getUserData();
+			toggle.setSelected(boardSize[0] == game.getPieces().getSize() && boardSize[1] == game.getWinLength());
+		}
+	}
+	
+	/** Show the game's board in the center pane, and listen for clicks on it. */
+	private void showBoard() {
+		Region board = game.getBoard().getView();
+		// make the board size match the size of pane where it is shown
+		centerPane.getChildren().setAll(board);
+		centerPane.prefWidthProperty().bind(board.prefWidthProperty());
+		centerPane.prefHeightProperty().bind(board.prefHeightProperty());
+		
+		// Listen to the board for mouse clicks on squares and invoke handleCellClicked()
+		game.getBoard().setOnCellClicked( this::handleCellClicked ); // this is a reference to method handleCellClicked()
+	}
+	
+	/**
+	 * Start a new game on a board of a different size.
+	 * The computer player is replaced by one that suits the board.
+	 */
+	private void setBoardSize(int size, int winLength) {
+		if (size == game.getPieces().getSize() && winLength == game.getWinLength()) return;
+		game.setBoardSize(size, winLength);
+		computer.setStrategy(newStrategy(game));
+		showBoard();
+		if (centerPane.getScene() != null && centerPane.getScene().getWindow() != null)
+			centerPane.getScene().getWindow().sizeToScene();
+		updateGameStatus();
+		playComputerMove();
+	}
+	
 	private void updateGameStatus() {
 		Player winner = game.winner();
 		if (winner != Player.NONE) topLabel.setText("Player "+winner+" wins!");
@@ -67,26 +269,73 @@ public class GameController {
 	}
 
 	
-	/** Event handler for mouse clicks on game board. */
-	public void handleCellClicked(MouseEvent event) {
-		Object source = event.getSource();
-		if (source instanceof BoardSquare) {
-			BoardSquare cell = (BoardSquare)source;
-			int row = cell.getRow();
-			int col = cell.getColumn();
-			double size = cell.getHeight();
-			System.out.printf("Clicked on [%d,%d]\n", row, col);
-			Player player = game.getNextPlayer();
-			if (game.canMoveTo(player, col, row)) {
-				game.moveTo(new Piece(player, size), col, row);
-				// The game will add piece to the board
-			}
-			updateGameStatus();
+	/** Event handler for mouse clicks on a square of the game board. */
+	public void handleCellClicked(int col, int row) {
+		Player player = game.getNextPlayer();
+		if (isComputer(player)) return; // not the human's turn
+		if (game.canMoveTo(player, col, row)) {
+			game.moveTo(player, col, row);
+			// The game will add piece to the board
 		}
+		updateGameStatus();
+		playComputerMove();
 	}
 	
 	/** Handler for button click to start a new game. */
 	public void handleNewGameEvent(ActionEvent event) {
+		computer.cancel();
 		game.startNewGame();
+		updateGameStatus();
+		playComputerMove();
+	}
+	
+	/** Handler for Undo. Also undoes the computer's moves, back to the human's turn. */
+	public void handleUndoEvent(ActionEvent event) {
+		computer.cancel();
+		game.undo();
+		while (isComputer(game.getNextPlayer()) && game.canUndo()) game.undo();
+		updateGameStatus();
+	}
+	
+	/** Handler for Redo. Redoes the computer's reply, too. */
+	public void handleRedoEvent(ActionEvent event) {
+		computer.cancel();
+		game.redo();
+		while (isComputer(game.getNextPlayer()) && game.canRedo()) game.redo();
+		updateGameStatus();
+		playComputerMove();
+	}
+	
+	/** Test if the computer plays for a player. */
+	private boolean isComputer(Player player) {
+		if (player == Player.X) return computerPlaysX.isSelected();
+		if (player == Player.O) return computerPlaysO.isSelected();
+		return false;
+	}
+	
+	/** Handler for the menu items that choose which players the computer plays. */
+	public void handleComputerPlaysEvent(ActionEvent event) {
+		// the computer may have been thinking for a side it no longer plays
+		computer.cancel();
+		playComputerMove();
+	}
+	
+	/**
+	 * If it is the computer's turn, start choosing a move in the background.
+	 * The move is played on the FX thread when it is ready.
+	 */
+	private void playComputerMove() {
+		Player player = game.getNextPlayer();
+		if (game.isGameOver() || ! isComputer(player) || computer.isThinking()) return;
+		computer.requestMove(game.getPieces(), (cell) -> {
+			int size = game.getPieces().getSize();
+			int col = cell % size;
+			int row = cell / size;
+			if (! game.canMoveTo(player, col, row)) return;
+			game.moveTo(player, col, row);
+			updateGameStatus();
+			// if the computer plays both sides, keep going
+			playComputerMove();
+		});
 	}
 }
@@ -1,5 +1,8 @@
 package tictactoe;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
@@ -12,26 +15,69 @@ import javafx.scene.text.TextAlignment;
  * This class represents the view of a piece.
  * 
  * Piece extends StackPane so it can be placed on another pane.
+ * The state of the board is kept by tictactoe.engine.Bitboard,
+ * so no Piece objects are needed to represent empty squares.
+ * 
+ * Pieces are reused: the Board creates one Piece per square and
+ * shows a player on it with setType().  A Piece of type Player.NONE
+ * is invisible.  Pieces of the same size share one Font.
  * 
  * @author jim
  *
  */
 public class Piece extends StackPane {
-	/** Special object to represent no piece. Used to avoid nulls on game board. */
-	public static final Piece NONE = new Piece(Player.NONE, 10.0);
+	/**
+	 * Fonts for each piece size, shared by all pieces.
+	 * Boards can be built in a background thread, so this is a concurrent map.
+	 */
+	private static final Map<Double,Font> FONTS = new ConcurrentHashMap<>();
 	/** text displayed on the piece */
 	private Text text;
-	/** Type type of the piece.  Its public final for efficiency in checking board state. */
-	public final Player type;
+	/** Type type of the piece. */
+	private Player type;
 	
 	public Piece(Player type, double size) {
-		this.type = type;
-		this.text = new Text(type.text);
+		this.text = new Text();
 		text.setStroke(Color.BLACK);
-		text.setStrokeWidth(0.04*size); // guess of appropriate thickness
-		text.setFont(new Font(0.85*size)); // smaller than board cell size to avoid expanding the board cell
+		setSize(size);
 		text.setTextAlignment(TextAlignment.CENTER);
 		super.getChildren().add(text);
+		// clicks go to the square underneath
+		super.setMouseTransparent(true);
+		setType(type);
+	}
+	
+	/**
+	 * Get the shared font for pieces of a given size.
+	 * The font is smaller than board cell size to avoid expanding the board cell.
+	 */
+	private static Font fontFor(double size) {
+		return FONTS.computeIfAbsent(size, (s) -> new Font(0.85*s));
+	}
+	
+	/**
+	 * Change the size of the piece, such as when a board is zoomed.
+	 * @param size width and height of the square the piece is on
+	 */
+	public void setSize(double size) {
+		text.setStrokeWidth(0.04*size); // guess of appropriate thickness
+		text.setFont(fontFor(size));
+	}
+	
+	/** @return the player shown by this piece, or Player.NONE */
+	public Player getType() {
+		return type;
+	}
+	
+	/**
+	 * Show a player's piece, or nothing.
+	 * @param type player to show, or Player.NONE to hide this piece
+	 */
+	public void setType(Player type) {
+		if (type == this.type) return;
+		this.type = type;
+		text.setText(type.text);
+		super.setVisible(type != Player.NONE);
 	}
 	
 	/**
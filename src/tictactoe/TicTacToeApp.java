@@ -10,12 +10,17 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import util.events.FxmlLoadEvent;
 
 /**
  * Launch the JavaFX application.
  *
  */
 public class TicTacToeApp extends Application {
+	/** The game, kept when the view is discarded so a new view can continue it. */
+	private TicTacToeGame game;
+	/** The computer player for the game, shared by all views of it. Only used on the FX thread. */
+	private AsyncMoveProvider computer;
 
 	public static void main(String[] args) {
 		launch(args);
@@ -37,8 +42,19 @@ public class TicTacToeApp extends Application {
 	    primaryStage.show();
 	}
 	
+	/**
+	 * Get the computer player for the game, and create it the first time.
+	 * The controller calls this on the FX thread, so it works when
+	 * initComponents() is called by StageManager's loader thread.
+	 */
+	private AsyncMoveProvider getComputer() {
+		if (computer == null) computer = GameController.newComputer(game);
+		return computer;
+	}
+	
 	/**
 	 * Create the scene for TicTacToe game.
+	 * If this was called before, the new scene shows the same game.
 	 */
 	public Parent initComponents() {
 		String fxml = "tictactoe/GameUI.fxml";
@@ -48,8 +64,10 @@ public class TicTacToeApp extends Application {
 			return null;
 		}
 		try {
+			if (game == null) game = new TicTacToeGame(3);
 			FXMLLoader loader = new FXMLLoader(formURL);
-			Parent parent = loader.load();
+			loader.setControllerFactory( (type) -> new GameController(game, this::getComputer) );
+			Parent parent = FxmlLoadEvent.load(loader);
 			return parent;
 
 		} catch (Exception ex) {
@@ -1,138 +1,297 @@
 package tictactoe;
 
-import java.util.function.Predicate;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
-import javafx.scene.Node;
+import tictactoe.engine.Bitboard;
+import tictactoe.engine.GameHistory;
+import tictactoe.engine.Position;
+import tictactoe.record.GameRecordWriter;
+import util.events.MoveEvent;
 
 /**
  * The Model class for a tic-tac-toe game.
  * Its responsible for receiving moves, deciding if a move is legal,
  * and deciding when game is over.
  * 
+ * The moves are kept in a GameHistory, so moves can be undone and redone,
+ * and an undo followed by a different move starts a new variation.
+ * 
  * @author jim
  */
 
 public class TicTacToeGame {
-	private final int boardsize;
+	/** Boards larger than this are drawn on a Canvas instead of using nodes for squares. */
+	public static final int MAX_NODE_BOARD_SIZE = 10;
+	/** Boards larger than this are shown in a viewport that can be scrolled and zoomed. */
+	public static final int MAX_CANVAS_BOARD_SIZE = 50;
+	private int boardsize;
 	/** View of the TicTacToe board. */
-	private Board board;
-	/** Pieces on the board. */
-	private Piece[][] pieces;
+	private BoardView board;
+	/** Pieces on the board. The view only shows what is here. */
+	private Bitboard pieces;
+	/** Moves of the game, for undo and redo. */
+	private GameHistory history;
+	/** Where finished games are recorded, or null. */
+	private GameRecordWriter recorder;
 	/** Flag for game over. An observable object. */
 	private SimpleBooleanProperty gameOver;
 	
 	private Player nextPlayer = Player.X;
 	
+	/**
+	 * Create a game where a player must fill a whole row, column,
+	 * or diagonal to win.
+	 * @param size number of rows and columns on the board
+	 */
 	public TicTacToeGame(int size) {
+		this(size, size);
+	}
+	
+	/**
+	 * Create a game on a large board, such as 15x15 five-in-a-row.
+	 * @param size number of rows and columns on the board
+	 * @param winLength number of pieces in a line needed to win
+	 */
+	public TicTacToeGame(int size, int winLength) {
 		this.boardsize = size;
-		board = new Board(boardsize,boardsize);   // view of the gameboard
-		pieces = new Piece[boardsize][boardsize]; // stores info about pieces on board
+		// view of the gameboard
+		board = makeBoard();
+		pieces = new Bitboard(boardsize, winLength); // stores info about pieces on board
+		history = new GameHistory(boardsize, winLength);
 		gameOver = new SimpleBooleanProperty(false);
 		startNewGame();
 	}
 	
-	public Board getBoard() {
+	/**
+	 * Change the size of the board and start a new game.
+	 * The view of the board is replaced, so get it again with getBoard().
+	 * @param size number of rows and columns on the board
+	 * @param winLength number of pieces in a line needed to win
+	 */
+	public void setBoardSize(int size, int winLength) {
+		pieces = new Bitboard(size, winLength);
+		history = new GameHistory(size, winLength);
+		boardsize = size;
+		board = makeBoard();
+		startNewGame();
+	}
+	
+	/** @return number of pieces in a line needed to win */
+	public int getWinLength() {
+		return pieces.getWinLength();
+	}
+	
+	public BoardView getBoard() {
+		return board;
+	}
+	
+	/**
+	 * Replace the view of the board with a new one that shows the current pieces.
+	 * Use this when the old view was discarded, such as when its scene was
+	 * evicted from a cache. The game itself is not changed.
+	 * @return the new view
+	 */
+	public BoardView newBoard() {
+		board = makeBoard();
+		for(int cell=0; cell<pieces.getCellCount(); cell++) {
+			if (! pieces.isEmpty(cell)) board.showPiece(cell % boardsize, cell / boardsize, pieces.pieceAt(cell));
+		}
 		return board;
 	}
 	
+	/** Create a view that suits the board size. */
+	private BoardView makeBoard() {
+		if (boardsize <= MAX_NODE_BOARD_SIZE) return new Board(boardsize,boardsize);
+		if (boardsize <= MAX_CANVAS_BOARD_SIZE) return new CanvasBoard(boardsize,boardsize);
+		return new ViewportBoard(boardsize,boardsize);
+	}
+	
+	/**
+	 * Get the board state without the view.
+	 * @return the pieces on the board
+	 */
+	public Bitboard getPieces() {
+		return pieces;
+	}
+	
+	/**
+	 * Get the current position as an immutable object.
+	 * It can be shared with other threads, such as for analysis.
+	 * @return the current position
+	 */
+	public Position getPosition() {
+		return history.getPosition();
+	}
+	
+	/**
+	 * Save the moves of the game, so it can be restored with readFrom.
+	 * The next player and winner are found again by replaying the moves.
+	 * @param buffer where to write the moves, with at least
+	 *     getPosition().getSnapshotSize() bytes remaining
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		history.getPosition().writeTo(buffer);
+	}
+	
+	/**
+	 * Replace the current game with a game saved by writeTo.
+	 * Variations and moves that were undone are not saved.
+	 * @param buffer a buffer positioned at the saved game
+	 * @throws IllegalArgumentException if the saved game is for a different board
+	 */
+	public void readFrom(ByteBuffer buffer) {
+		Position saved = Position.readFrom(buffer);
+		if (saved.getSize() != boardsize || saved.getWinLength() != getWinLength())
+			throw new IllegalArgumentException("Saved game is for a different board");
+		int[] moves = new int[saved.getMoveCount()];
+		for(Position p = saved; p.getParent() != null; p = p.getParent()) {
+			moves[p.getMoveCount()-1] = p.getLastMove();
+		}
+		startNewGame();
+		// the recorder is not used, since the game was already recorded
+		GameRecordWriter savedRecorder = recorder;
+		recorder = null;
+		for(int cell : moves) moveTo(nextPlayer, cell % boardsize, cell / boardsize);
+		recorder = savedRecorder;
+	}
+	
+	/**
+	 * Record each game when it ends.
+	 * @param recorder writer for finished games, or null to stop recording
+	 */
+	public void setRecorder(GameRecordWriter recorder) {
+		this.recorder = recorder;
+	}
+	
+	/** @return the writer for finished games, or null if games are not recorded */
+	public GameRecordWriter getRecorder() {
+		return recorder;
+	}
+	
 	public void startNewGame() {
-		// Avoid nulls. Assign a "none" object to each location on the board.
-		for(int row=0; row<boardsize; row++) 
-			for(int col=0; col<boardsize; col++) pieces[row][col] = Piece.NONE;
-		// Remove Pieces from the board (view), but not the squares themselves. Use a Predicate to test for Piece.
-		Predicate<Node> isPiece = (node) -> node instanceof Piece;
-		board.getChildren().removeIf(isPiece);
+		pieces.clear();
+		history.clear();
+		// Hide the pieces on the board (view). They are reused in the next game.
+		board.clearPieces();
+		nextPlayer = Player.X;
 		gameOver.set(false);
 	}
 	
 	/**
 	 * Test whether a player can move to a square.
-	 * @return true if can move to the requested (col,row) on board.
+	 * @return true if it is player's turn and (col,row) is an empty cell on the board.
 	 */
 	public boolean canMoveTo(Player player, int col, int row) {
-		if (row<0 || row>pieces.length) return false;
-		if (col<0 || col>pieces[row].length) return false;
-		if (isGameOver()) return false;
-		return pieces[row][col] == null || pieces[row][col] == Piece.NONE;
+		if (isGameOver() || player != pieces.nextPlayer()) return false;
+		return pieces.isEmpty(col, row);
 	}
 	
 	/**
-	 * Place a piece at a given (row,col) on the game board.
+	 * Place a player's piece at a given (row,col) on the game board.
 	 * It is up to the caller to make sure that the cell can
 	 * be occupied before calling moveTo.
 	 * 
-	 * @param piece the piece to place 
+	 * @param player the player who moves. This must be the next player.
 	 * @param row board row to move to
 	 * @param col board column to move to
 	 */
-	public void moveTo(Piece piece, int col, int row) {
-		assert canMoveTo(piece.type, col, row): 
-			String.format("moveTo(%s,%d,%d) is invalid",piece.toString(),row,col);
-		if (! canMoveTo(piece.type, col, row) ) return; // not reached when assertions enabled
-		pieces[row][col] = piece;
-		board.add(piece, col, row); // GridPane.add has column param before row param
-		
+	public void moveTo(Player player, int col, int row) {
+		assert canMoveTo(player, col, row): 
+			String.format("moveTo(%s,%d,%d) is invalid",player,row,col);
+		if (! canMoveTo(player, col, row) ) return; // not reached when assertions enabled
+		MoveEvent event = new MoveEvent();
+		event.begin();
+		// only read the clock when the event is recorded
+		long start = event.isEnabled() ? System.nanoTime() : 0;
+		// the board decides whose piece it is, the same as history and redo
+		pieces.play(row*boardsize + col);
+		long winCheck = event.isEnabled() ? System.nanoTime() - start : 0;
+		history.play(row*boardsize + col);
+		board.showPiece(col, row, player);
+		updateStatus();
+		if (recorder != null && isGameOver()) recordGame();
+		if (event.shouldCommit()) {
+			event.boardSize = boardsize;
+			event.winLength = getWinLength();
+			event.col = col;
+			event.row = row;
+			event.player = player.toString();
+			event.winCheck = winCheck;
+			event.winner = winner().toString();
+			event.gameOver = isGameOver();
+			event.commit();
+		}
+	}
+	
+	/** Write the game to the recorder. Games are few, so flush each one. */
+	private void recordGame() {
+		try {
+			recorder.write(history.getPosition());
+			recorder.flush();
+		} catch (IOException ex) {
+			Logger.getLogger("TicTacToeGame").log(Level.WARNING, "Could not record game", ex);
+			recorder = null;
+		}
+	}
+	
+	/** Update next player and game over status after a move or undo. */
+	private void updateStatus() {
 		/** next player's turn to move. */
-		if (piece.type == Player.X) nextPlayer = Player.O;
-		else nextPlayer = Player.X;
+		nextPlayer = pieces.nextPlayer();
 		
-		/** check for a winner. */
-		if (winner() != Player.NONE) gameOver.set(true);
-		
-		/** after each move check if board is full */
-		if (boardIsFull()) gameOver.set(true);
+		/** check for a winner, and after each move check if board is full. */
+		gameOver.set(winner() != Player.NONE || boardIsFull());
+	}
+	
+	/** @return true if there is a move to undo */
+	public boolean canUndo() {
+		return history.canUndo();
 	}
 	
 	/**
-	 * Evaluate board to see if a player has won.
+	 * Take back the last move.
+	 * @return true if a move was undone
+	 */
+	public boolean undo() {
+		int cell = history.undo();
+		if (cell < 0) return false;
+		pieces.undo(cell);
+		board.showPiece(cell % boardsize, cell / boardsize, Player.NONE);
+		updateStatus();
+		return true;
+	}
+	
+	/** @return true if there is a move to redo */
+	public boolean canRedo() {
+		return history.canRedo();
+	}
+	
+	/**
+	 * Play again the move that was last undone.
+	 * @return true if a move was played
+	 */
+	public boolean redo() {
+		int cell = history.redo();
+		if (cell < 0) return false;
+		Player player = pieces.nextPlayer();
+		pieces.play(cell);
+		board.showPiece(cell % boardsize, cell / boardsize, player);
+		updateStatus();
+		return true;
+	}
+	
+	/**
+	 * Get the player who has won.
+	 * The board updates the winner after each move, so this is O(1).
 	 * @return reference to Player that wins. If no winner returns Player.NONE.
 	 */
 	public Player winner() {
-		// This is fast but hacky and only works when the
-		// number of pieces in a line to win (3) equals board size (3).
-		
-		// Look for N matching pieces on same row.
-		rowtest:
-		for(int row=0; row<boardsize; row++) {
-			Player p = pieces[row][0].type;
-			if (p == Player.NONE) continue;
-			for(int col=1; col<boardsize; col++) {
-				if (pieces[row][col].type != p) continue rowtest;
-			}
-			// all pieces on this row belong to p
-			return p;
-		}
-		// Look for N matching pieces on same column
-		coltest:
-		for(int col=0; col<boardsize; col++) {
-			Player p = pieces[0][col].type;
-			if (p == Player.NONE) continue;
-			for(int row=1; row<boardsize; row++) {
-				if (pieces[row][col].type != p) continue coltest;
-			}
-			return p;
-		}
-		// Look for N matching pieces on downward diagonal.
-		Player p = pieces[0][0].type;
-		for(int col=1; col<boardsize; col++) {
-			if (p != pieces[col][col].type) {
-				p = Player.NONE;
-				break;
-			}
-		}
-		if (p != Player.NONE) return p;
-		// Look for N matching pieces on upward diagonal
-		p = pieces[0][boardsize-1].type; // start at lower-left corner
-		for(int col=1; col<boardsize; col++) {
-			int row = boardsize - col - 1;
-			if (p != pieces[col][row].type) {
-				p = Player.NONE;
-				break;
-			}
-		}
-		return p;
+		return pieces.winner();
 	}
 	
 	/**
@@ -162,13 +321,10 @@ public class TicTacToeGame {
 	
 	/** 
 	 * Check if game board is fully occupied.
+	 * This compares the number of moves to the number of squares.
 	 * @return true if board is full
 	 */
 	public boolean boardIsFull() {
-		/** check if board is full */
-		for(int row=0; row<boardsize; row++) {
-			for(int col=0; col<boardsize; col++) if (pieces[row][col] == Piece.NONE) return false;
-		}
-		return true;
+		return pieces.isFull();
 	}
 }
@@ -0,0 +1,230 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * A view of a very large board that only creates nodes for the
+ * squares that are visible.
+ *
+ * The board is seen through a viewport of at most VIEWPORT_PIXELS.
+ * Drag the board or use the scroll wheel to move it, and use
+ * Ctrl + scroll wheel to zoom in or out.
+ *
+ * The view has a pool of cells, enough to cover the viewport at the
+ * smallest zoom. When the board moves, cells are moved and shown
+ * with the piece of their new square, so no nodes are created after
+ * the pool is filled. The number of nodes depends only on the size
+ * of the viewport, not on the size of the board.
+ *
+ * Like CanvasBoard, a click is mapped to a square by arithmetic,
+ * so cells do not need mouse handlers.
+ */
+public class ViewportBoard extends Region implements BoardView {
+	/** Largest width or height of the viewport, in pixels. */
+	public static final double VIEWPORT_PIXELS = 600;
+	/** Smallest size of a square, in pixels. */
+	public static final int MIN_TILESIZE = 12;
+	/** Size of squares when the board is created. */
+	public static final int DEFAULT_TILESIZE = 40;
+	/** Width of the lines between squares. */
+	public static final double GAP = 1;
+	/** Each zoom step changes square size by this factor. */
+	private static final double ZOOM_STEP = 1.25;
+
+	private final int rows;
+	private final int cols;
+	/** Player shown on each square, by row*cols + col. */
+	private final Player[] shown;
+	/** Size of each square, without the gap. */
+	private int tileSize = DEFAULT_TILESIZE;
+	/** Position of the viewport on the board, in pixels. */
+	private double offsetX;
+	private double offsetY;
+	/** Cells for the visible squares. Only grows. */
+	private final List<Cell> cells = new ArrayList<>();
+	/** First visible square and number of visible columns, set by layoutChildren. */
+	private int firstCol;
+	private int firstRow;
+	private int visibleCols;
+	private int visibleRows;
+	/** Where a drag started, to tell a drag from a click. */
+	private double dragX;
+	private double dragY;
+	private CellHandler handler;
+
+	/** A square and its piece. Cells are reused for different squares. */
+	private static class Cell extends StackPane {
+		final Rectangle square;
+		final Piece piece;
+
+		Cell(int size) {
+			square = new Rectangle(size, size, Color.LIGHTGRAY);
+			piece = new Piece(Player.NONE, size);
+			super.getChildren().addAll(square, piece);
+			super.setMouseTransparent(true);
+		}
+
+		void setSize(int size) {
+			if (square.getWidth() == size) return;
+			square.setWidth(size);
+			square.setHeight(size);
+			piece.setSize(size);
+		}
+	}
+
+	/**
+	 * Create an empty board.
+	 */
+	public ViewportBoard(int rows, int cols) {
+		this.rows = rows;
+		this.cols = cols;
+		shown = new Player[rows*cols];
+		Arrays.fill(shown, Player.NONE);
+		double width = Math.min(VIEWPORT_PIXELS, boardWidth());
+		double height = Math.min(VIEWPORT_PIXELS, boardHeight());
+		this.setPrefSize(width, height);
+		this.setMinSize(width, height);
+		// the gap between squares is drawn by the background
+		this.setStyle("-fx-background-color: black;");
+		Rectangle clip = new Rectangle();
+		clip.widthProperty().bind(this.widthProperty());
+		clip.heightProperty().bind(this.heightProperty());
+		this.setClip(clip);
+
+		this.setOnMousePressed( (event) -> {
+			dragX = event.getX();
+			dragY = event.getY();
+		});
+		this.setOnMouseDragged( (event) -> {
+			moveTo(offsetX - (event.getX() - dragX), offsetY - (event.getY() - dragY));
+			dragX = event.getX();
+			dragY = event.getY();
+		});
+		this.setOnMouseClicked(this::handleClick);
+		this.setOnScroll(this::handleScroll);
+	}
+
+	private double pitch() {
+		return tileSize + GAP;
+	}
+
+	private double boardWidth() {
+		return cols * pitch() + GAP;
+	}
+
+	private double boardHeight() {
+		return rows * pitch() + GAP;
+	}
+
+	/** Move the viewport, but not past the edges of the board. */
+	private void moveTo(double x, double y) {
+		x = Math.max(0, Math.min(x, boardWidth() - getWidth()));
+		y = Math.max(0, Math.min(y, boardHeight() - getHeight()));
+		if (x == offsetX && y == offsetY) return;
+		offsetX = x;
+		offsetY = y;
+		requestLayout();
+	}
+
+	/**
+	 * Change the size of squares, keeping the point (x,y) in the
+	 * viewport over the same place on the board.
+	 */
+	private void zoom(int newTileSize, double x, double y) {
+		newTileSize = Math.max(MIN_TILESIZE, Math.min(Board.TILESIZE, newTileSize));
+		if (newTileSize == tileSize) return;
+		double scale = (newTileSize + GAP) / pitch();
+		tileSize = newTileSize;
+		// request layout even if the offset does not change
+		requestLayout();
+		moveTo((offsetX + x) * scale - x, (offsetY + y) * scale - y);
+	}
+
+	private void handleClick(MouseEvent event) {
+		// a drag ends with a click event, which is not a move
+		if (! event.isStillSincePress() || handler == null) return;
+		int col = (int)((event.getX() + offsetX - GAP) / pitch());
+		int row = (int)((event.getY() + offsetY - GAP) / pitch());
+		if (col >= 0 && col < cols && row >= 0 && row < rows) handler.cellClicked(col, row);
+	}
+
+	private void handleScroll(ScrollEvent event) {
+		if (event.isControlDown()) {
+			if (event.getDeltaY() > 0) zoom((int)Math.round(tileSize * ZOOM_STEP), event.getX(), event.getY());
+			else if (event.getDeltaY() < 0) zoom((int)Math.round(tileSize / ZOOM_STEP), event.getX(), event.getY());
+		}
+		else moveTo(offsetX - event.getDeltaX(), offsetY - event.getDeltaY());
+		event.consume();
+	}
+
+	/**
+	 * Place a cell on each visible square.
+	 * @see javafx.scene.Parent#layoutChildren()
+	 */
+	@Override
+	protected void layoutChildren() {
+		// the viewport may have been resized, so check the offset again
+		offsetX = Math.max(0, Math.min(offsetX, boardWidth() - getWidth()));
+		offsetY = Math.max(0, Math.min(offsetY, boardHeight() - getHeight()));
+		double pitch = pitch();
+		firstCol = (int)(offsetX / pitch);
+		firstRow = (int)(offsetY / pitch);
+		int lastCol = Math.min(cols - 1, (int)((offsetX + getWidth()) / pitch));
+		int lastRow = Math.min(rows - 1, (int)((offsetY + getHeight()) / pitch));
+		visibleCols = lastCol - firstCol + 1;
+		visibleRows = lastRow - firstRow + 1;
+		int needed = visibleCols * visibleRows;
+		while (cells.size() < needed) {
+			Cell cell = new Cell(tileSize);
+			cells.add(cell);
+			getChildren().add(cell);
+		}
+		int k = 0;
+		for(int row = firstRow; row <= lastRow; row++) {
+			for(int col = firstCol; col <= lastCol; col++) {
+				Cell cell = cells.get(k++);
+				cell.setSize(tileSize);
+				cell.piece.setType(shown[row*cols + col]);
+				cell.resizeRelocate(GAP + col*pitch - offsetX, GAP + row*pitch - offsetY, tileSize, tileSize);
+				cell.setVisible(true);
+			}
+		}
+		// cells not needed at this zoom
+		for(; k < cells.size(); k++) cells.get(k).setVisible(false);
+	}
+
+	@Override
+	public Region getView() {
+		return this;
+	}
+
+	@Override
+	public void showPiece(int col, int row, Player player) {
+		shown[row*cols + col] = player;
+		// update the cell now if the square is visible
+		int c = col - firstCol;
+		int r = row - firstRow;
+		if (c >= 0 && c < visibleCols && r >= 0 && r < visibleRows)
+			cells.get(r*visibleCols + c).piece.setType(player);
+	}
+
+	@Override
+	public void clearPieces() {
+		Arrays.fill(shown, Player.NONE);
+		for(Cell cell : cells) cell.piece.setType(Player.NONE);
+	}
+
+	@Override
+	public void setOnCellClicked(CellHandler handler) {
+		this.handler = handler;
+	}
+}
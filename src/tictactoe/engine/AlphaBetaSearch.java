@@ -0,0 +1,348 @@
+package tictactoe.engine;
+
+import java.util.function.BooleanSupplier;
+
+import tictactoe.Player;
+
+/**
+ * A computer player that uses negamax search with alpha-beta pruning.
+ *
+ * Results are saved in a TranspositionTable keyed by the Zobrist hash
+ * of each position, so positions reached by different move orders are
+ * only searched once. The search uses iterative deepening: each depth
+ * is searched in turn, and the best move from the table and a history
+ * table of moves that caused cutoffs are tried first at the next depth.
+ *
+ * If the search reaches the end of the game the result is exact,
+ * so on 3x3 and 4x4 boards it plays perfectly.
+ * On larger boards positions at the depth limit are scored by a heuristic
+ * and only cells near existing pieces are searched.
+ *
+ * An AlphaBetaSearch is not thread-safe. Use one per thread.
+ * Several searches may share one TranspositionTable.
+ */
+public class AlphaBetaSearch implements MoveStrategy {
+	/** Score for a win. A win in n moves scores WIN - n. */
+	public static final int WIN = 1_000_000;
+	/** Scores larger than this (in absolute value) are a win or loss. */
+	static final int WIN_THRESHOLD = WIN / 2;
+	/** Larger than any score. */
+	static final int INFINITY = WIN + 1;
+	/** Boards with more cells than this only search cells near pieces. */
+	static final int SMALL_BOARD = 25;
+	/** Distance from a piece for a cell to be a candidate move on a big board. */
+	static final int NEIGHBORHOOD = 2;
+	/** How often (in nodes) to check for a request to stop. Must be 2^n - 1. */
+	private static final int STOP_CHECK_INTERVAL = 1023;
+
+	private final TranspositionTable table;
+	private final int maxDepth;
+	/** Copy of the position being searched. */
+	private Bitboard board;
+	/** Move list for each ply of the search, reused between searches. */
+	private int[][] moves;
+	/** Ordering score of each move in moves. */
+	private int[][] order;
+	/** Count of cutoffs caused by each cell, for move ordering. */
+	private int[] history;
+	private int rootMove;
+	private int score;
+	private long nodes;
+	/** Asked periodically whether to stop the search, or null. */
+	private BooleanSupplier stopSignal;
+	/** True if the search was stopped before it finished. */
+	private boolean stopped;
+
+	/**
+	 * Create a search with a 16 MB transposition table.
+	 * @param maxDepth maximum number of moves to look ahead
+	 */
+	public AlphaBetaSearch(int maxDepth) {
+		this(maxDepth, 16);
+	}
+
+	/**
+	 * Create a search.
+	 * @param maxDepth maximum number of moves to look ahead
+	 * @param megabytes memory budget for the transposition table
+	 */
+	public AlphaBetaSearch(int maxDepth, int megabytes) {
+		this(maxDepth, new TranspositionTable(megabytes));
+	}
+
+	/**
+	 * Create a search that uses a shared transposition table.
+	 * @param maxDepth maximum number of moves to look ahead
+	 * @param table the table to use
+	 */
+	AlphaBetaSearch(int maxDepth, TranspositionTable table) {
+		this.maxDepth = maxDepth;
+		this.table = table;
+	}
+
+	/**
+	 * Choose the best move for the next player.
+	 * @see tictactoe.engine.MoveStrategy#selectMove(Bitboard)
+	 */
+	@Override
+	public int selectMove(Bitboard position) {
+		return selectMove(position, null);
+	}
+
+	/**
+	 * Choose the best move found before stop returns true.
+	 * The move is from the deepest search that finished, so a
+	 * search stopped in the middle of a depth does not choose it.
+	 * @see tictactoe.engine.MoveStrategy#selectMove(Bitboard, BooleanSupplier)
+	 */
+	@Override
+	public int selectMove(Bitboard position, BooleanSupplier stop) {
+		prepare(position);
+		table.newSearch();
+		nodes = 0;
+		stopped = false;
+		stopSignal = stop;
+		// old cutoffs count for less than new ones
+		for(int cell=0; cell<history.length; cell++) history[cell] >>= 1;
+		int empty = board.getCellCount() - board.getMoveCount();
+		int depthLimit = Math.min(maxDepth, empty);
+		int best = -1;
+		for(int depth=1; depth<=depthLimit; depth++) {
+			int s = negamax(depth, -INFINITY, INFINITY, 0);
+			if (stopped) break;
+			score = s;
+			best = rootMove;
+			// stop if the result is already known
+			if (Math.abs(score) > WIN_THRESHOLD) break;
+		}
+		stopSignal = null;
+		// stopped before depth 1 finished, so play any legal move
+		if (best < 0) best = firstEmpty(board);
+		return best;
+	}
+
+	/** @return the first empty cell, or -1 if the board is full */
+	static int firstEmpty(Bitboard board) {
+		for(int cell=0; cell<board.getCellCount(); cell++) if (board.isEmpty(cell)) return cell;
+		return -1;
+	}
+
+	/** Copy the position and make sure buffers are big enough. */
+	private void prepare(Bitboard position) {
+		if (board == null || board.getSize() != position.getSize()
+				|| board.getWinLength() != position.getWinLength()) {
+			board = new Bitboard(position);
+			int cells = board.getCellCount();
+			moves = new int[cells+1][cells];
+			order = new int[cells+1][cells];
+			history = new int[cells];
+		}
+		else board.copyFrom(position);
+	}
+
+	/**
+	 * Search a position with a given window, for use by a parallel search.
+	 * The search stops early if stop returns true, and then the result
+	 * is meaningless and nothing is saved in the transposition table.
+	 *
+	 * @param position the position to search. It is not changed.
+	 * @param depth number of moves to look ahead
+	 * @param alpha lower bound of the window
+	 * @param beta upper bound of the window
+	 * @param ply number of moves from the root of the whole search
+	 * @param stop tells when to stop the search, or null
+	 * @return score of the position for the player to move
+	 */
+	int search(Bitboard position, int depth, int alpha, int beta, int ply, BooleanSupplier stop) {
+		prepare(position);
+		stopSignal = stop;
+		stopped = false;
+		return negamax(depth, alpha, beta, ply);
+	}
+
+	/** @return true if the last search was stopped before it finished */
+	boolean wasStopped() {
+		return stopped;
+	}
+
+	/** @return score of the last search for the player who moved, from -WIN to WIN */
+	public int getScore() {
+		return score;
+	}
+
+	/** @return number of positions examined since the last call to selectMove */
+	public long getNodes() {
+		return nodes;
+	}
+
+	private int negamax(int depth, int alpha, int beta, int ply) {
+		if ((++nodes & STOP_CHECK_INTERVAL) == 0 && stopSignal != null && stopSignal.getAsBoolean())
+			stopped = true;
+		if (stopped) return 0;
+		// the player who just moved has won
+		if (board.winner() != Player.NONE) return -(WIN - ply);
+		if (board.isFull()) return 0;
+		if (depth == 0) return evaluate(board);
+
+		long hash = board.getHash();
+		int alphaOrig = alpha;
+		int ttMove = -1;
+		long entry = table.probe(hash);
+		if (entry != TranspositionTable.MISS) {
+			ttMove = TranspositionTable.move(entry);
+			if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+				int s = fromTable(TranspositionTable.score(entry), ply);
+				switch (TranspositionTable.bound(entry)) {
+				case TranspositionTable.EXACT:
+					return s;
+				case TranspositionTable.LOWER:
+					alpha = Math.max(alpha, s);
+					break;
+				case TranspositionTable.UPPER:
+					beta = Math.min(beta, s);
+					break;
+				}
+				if (alpha >= beta) return s;
+			}
+		}
+
+		int[] moveList = moves[ply];
+		int count = generateMoves(board, moveList, order[ply], ttMove, history);
+		int best = -INFINITY;
+		int bestMove = -1;
+		for(int k=0; k<count; k++) {
+			int cell = moveList[k];
+			board.play(cell);
+			int s = -negamax(depth-1, -beta, -alpha, ply+1);
+			board.undo(cell);
+			if (stopped) return 0;
+			if (s > best) {
+				best = s;
+				bestMove = cell;
+				if (ply == 0) rootMove = cell;
+			}
+			if (best > alpha) alpha = best;
+			if (alpha >= beta) {
+				history[cell] += depth*depth;
+				break;
+			}
+		}
+		store(table, hash, best, alphaOrig, beta, depth, ply, bestMove);
+		return best;
+	}
+
+	/** Save a search result in the table with the right bound type. */
+	static void store(TranspositionTable table, long hash, int best, int alpha, int beta,
+			int depth, int ply, int bestMove) {
+		int bound = (best <= alpha) ? TranspositionTable.UPPER
+				: (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		table.store(hash, toTable(best, ply), depth, bound, bestMove);
+	}
+
+	/**
+	 * Win scores depend on the distance from the root, so they are stored
+	 * in the table as distance from the position instead.
+	 */
+	static int toTable(int score, int ply) {
+		if (score > WIN_THRESHOLD) return score + ply;
+		if (score < -WIN_THRESHOLD) return score - ply;
+		return score;
+	}
+
+	static int fromTable(int score, int ply) {
+		if (score > WIN_THRESHOLD) return score - ply;
+		if (score < -WIN_THRESHOLD) return score + ply;
+		return score;
+	}
+
+	/**
+	 * Put the candidate moves in a position into an array, best first.
+	 * The move from the transposition table is first, then moves that
+	 * caused cutoffs in other positions, then moves near the center.
+	 *
+	 * @param board the position
+	 * @param moves array to put moves in
+	 * @param order array for the ordering score of each move
+	 * @param ttMove move to try first, or -1
+	 * @param history cutoff counts for each cell, or null
+	 * @return number of moves
+	 */
+	static int generateMoves(Bitboard board, int[] moves, int[] order, int ttMove, int[] history) {
+		int size = board.getSize();
+		int cells = board.getCellCount();
+		boolean nearOnly = cells > SMALL_BOARD && board.getMoveCount() > 0;
+		int center = size / 2;
+		int count = 0;
+		for(int cell=0; cell<cells; cell++) {
+			if (! board.isEmpty(cell)) continue;
+			int col = cell % size;
+			int row = cell / size;
+			if (nearOnly && ! hasNeighbor(board, col, row)) continue;
+			int value;
+			if (cell == ttMove) value = Integer.MAX_VALUE;
+			else {
+				int distance = Math.max(Math.abs(col - center), Math.abs(row - center));
+				value = (history == null ? 0 : history[cell]) * 16 + (size - distance);
+			}
+			// insertion sort, largest value first
+			int k = count++;
+			while (k > 0 && order[k-1] < value) {
+				moves[k] = moves[k-1];
+				order[k] = order[k-1];
+				k--;
+			}
+			moves[k] = cell;
+			order[k] = value;
+		}
+		return count;
+	}
+
+	/** Test if there is a piece within NEIGHBORHOOD of (col,row). */
+	private static boolean hasNeighbor(Bitboard board, int col, int row) {
+		int size = board.getSize();
+		for(int r=Math.max(0, row-NEIGHBORHOOD); r<=Math.min(size-1, row+NEIGHBORHOOD); r++) {
+			for(int c=Math.max(0, col-NEIGHBORHOOD); c<=Math.min(size-1, col+NEIGHBORHOOD); c++) {
+				if (! board.isEmpty(r*size + c)) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Estimate the value of a position for the player to move.
+	 * Each line of winLength cells that contains pieces of only one
+	 * player counts for that player, more for lines with more pieces.
+	 * @return a score between -WIN_THRESHOLD and WIN_THRESHOLD
+	 */
+	static int evaluate(Bitboard board) {
+		int size = board.getSize();
+		int k = board.getWinLength();
+		long total = 0;
+		for(int row=0; row<size; row++) {
+			for(int col=0; col<size; col++) {
+				if (col + k <= size) total += window(board, col, row, 1, 0);
+				if (row + k <= size) total += window(board, col, row, 0, 1);
+				if (col + k <= size && row + k <= size) total += window(board, col, row, 1, 1);
+				if (col + k <= size && row - k >= -1) total += window(board, col, row, 1, -1);
+			}
+		}
+		total = Math.max(-WIN_THRESHOLD, Math.min(WIN_THRESHOLD, total));
+		// total is from X's point of view
+		return (board.nextPlayer() == Player.X) ? (int)total : -(int)total;
+	}
+
+	/** Score one line of winLength cells starting at (col,row). */
+	private static long window(Bitboard board, int col, int row, int dcol, int drow) {
+		int size = board.getSize();
+		int x = 0, o = 0;
+		for(int n=0; n<board.getWinLength(); n++) {
+			int value = board.valueAt((row + n*drow)*size + col + n*dcol);
+			if (value > 0) x++;
+			else if (value < 0) o++;
+		}
+		if (x > 0 && o > 0) return 0;
+		if (x > 0) return 1L << Math.min(3*x, 20);
+		if (o > 0) return -(1L << Math.min(3*o, 20));
+		return 0;
+	}
+}
@@ -0,0 +1,326 @@
+package tictactoe.engine;
+
+import java.util.Arrays;
+
+import tictactoe.Player;
+
+/**
+ * The state of a tic-tac-toe game as two bitsets, one for each player.
+ * Cell (col,row) is bit number row*size + col.
+ *
+ * This class has no JavaFX dependencies, so it can be used
+ * in headless code such as simulations and search.
+ * None of the query methods create objects.
+ *
+ * A player wins by putting winLength pieces in a row, column, or diagonal.
+ * The winner is updated after each move by looking only at the four lines
+ * through the cell that was played, so a move costs O(winLength)
+ * instead of a scan of the whole board.
+ *
+ * Search code can play and undo moves by cell index.
+ * The board keeps a Zobrist hash of the position that is updated
+ * on each move, for use as a transposition table key.
+ */
+public class Bitboard {
+	/** Row and column steps for the four directions of a line. */
+	private static final int[] DCOL = { 1, 0, 1,  1 };
+	private static final int[] DROW = { 0, 1, 1, -1 };
+
+	private final int size;
+	/** Number of pieces in a line needed to win. */
+	private final int winLength;
+	/** Number of cells on the board. */
+	private final int cells;
+	/** Cells occupied by X, 64 cells per word. */
+	private final long[] xbits;
+	/** Cells occupied by O, 64 cells per word. */
+	private final long[] obits;
+	/** Random keys for each (cell,player), shared by all boards. */
+	private final long[] zobrist;
+	/** Number of pieces on the board. */
+	private int moveCount;
+	private Player winner = Player.NONE;
+	/** Value of moveCount after the winning move, so undo can remove the win. */
+	private int winMoveCount;
+	/** Zobrist hash of the pieces on the board. */
+	private long hash;
+
+	/**
+	 * Create an empty board where a player must fill a whole line to win.
+	 * @param size number of rows and columns
+	 */
+	public Bitboard(int size) {
+		this(size, size);
+	}
+
+	/**
+	 * Create an empty board.
+	 * @param size number of rows and columns
+	 * @param winLength number of pieces in a line needed to win, from 1 to size
+	 */
+	public Bitboard(int size, int winLength) {
+		if (size < 1) throw new IllegalArgumentException("Board size must be positive");
+		if (winLength < 1 || winLength > size)
+			throw new IllegalArgumentException("Win length must be 1 - "+size);
+		this.size = size;
+		this.winLength = winLength;
+		this.cells = size*size;
+		this.xbits = new long[(cells+63) >>> 6];
+		this.obits = new long[xbits.length];
+		this.zobrist = Zobrist.keys(cells);
+	}
+
+	/**
+	 * Create a copy of another board.
+	 * @param other the board to copy
+	 */
+	public Bitboard(Bitboard other) {
+		this(other.size, other.winLength);
+		copyFrom(other);
+	}
+
+	/**
+	 * Make this board the same as another board of the same size.
+	 * This does not create any objects, so search code can reuse a board.
+	 * @param other the board to copy
+	 */
+	public void copyFrom(Bitboard other) {
+		if (other.size != size || other.winLength != winLength)
+			throw new IllegalArgumentException("Boards are not the same size");
+		System.arraycopy(other.xbits, 0, xbits, 0, xbits.length);
+		System.arraycopy(other.obits, 0, obits, 0, obits.length);
+		moveCount = other.moveCount;
+		winner = other.winner;
+		winMoveCount = other.winMoveCount;
+		hash = other.hash;
+	}
+
+	/**
+	 * Make this board the same as an immutable position of the same size.
+	 * Threads that share a Position can each copy it to their own board.
+	 * @param position the position to copy
+	 */
+	public void copyFrom(Position position) {
+		if (position.getSize() != size || position.getWinLength() != winLength)
+			throw new IllegalArgumentException("Boards are not the same size");
+		System.arraycopy(position.xbits, 0, xbits, 0, xbits.length);
+		System.arraycopy(position.obits, 0, obits, 0, obits.length);
+		moveCount = position.getMoveCount();
+		winner = position.winner();
+		winMoveCount = position.winMoveCount;
+		hash = position.getHash();
+	}
+
+	/** @return number of rows (and columns) on the board */
+	public int getSize() {
+		return size;
+	}
+
+	/** @return number of pieces in a line needed to win */
+	public int getWinLength() {
+		return winLength;
+	}
+
+	/** @return number of cells on the board */
+	public int getCellCount() {
+		return cells;
+	}
+
+	/** @return number of pieces on the board */
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	/** Remove all pieces from the board. */
+	public void clear() {
+		Arrays.fill(xbits, 0L);
+		Arrays.fill(obits, 0L);
+		moveCount = 0;
+		winner = Player.NONE;
+		hash = 0;
+	}
+
+	/**
+	 * Test whether a cell is on the board and not occupied.
+	 * @return true if (col,row) is an empty cell on the board
+	 */
+	public boolean isEmpty(int col, int row) {
+		if (row < 0 || row >= size) return false;
+		if (col < 0 || col >= size) return false;
+		int cell = row*size + col;
+		return ((xbits[cell >>> 6] | obits[cell >>> 6]) & (1L << cell)) == 0;
+	}
+
+	/**
+	 * Test whether a cell is empty.
+	 * @param cell index of a cell on the board, row*size + col
+	 * @return true if the cell is not occupied
+	 */
+	public boolean isEmpty(int cell) {
+		return ((xbits[cell >>> 6] | obits[cell >>> 6]) & (1L << cell)) == 0;
+	}
+
+	/**
+	 * Get the player who occupies a cell.
+	 * @return the player at (col,row), or Player.NONE if the cell is empty
+	 */
+	public Player pieceAt(int col, int row) {
+		int cell = row*size + col;
+		if (has(xbits, cell)) return Player.X;
+		if (has(obits, cell)) return Player.O;
+		return Player.NONE;
+	}
+
+	/**
+	 * Get the player who occupies a cell.
+	 * @param cell index of a cell on the board, row*size + col
+	 * @return the player at cell, or Player.NONE if the cell is empty
+	 */
+	public Player pieceAt(int cell) {
+		if (has(xbits, cell)) return Player.X;
+		if (has(obits, cell)) return Player.O;
+		return Player.NONE;
+	}
+
+	/**
+	 * Get the occupant of a cell as a number, for evaluation code.
+	 * @return Player.X.value, Player.O.value, or 0 if empty
+	 */
+	int valueAt(int cell) {
+		if (has(xbits, cell)) return Player.X.value;
+		if (has(obits, cell)) return Player.O.value;
+		return 0;
+	}
+
+	/**
+	 * Get the cells occupied by a player as a single bitmask.
+	 * Only valid for boards with 64 cells or less.
+	 * @return bitmask with bit (row*size + col) set for each of player's pieces
+	 */
+	long mask(Player player) {
+		if (player == Player.X) return xbits[0];
+		if (player == Player.O) return obits[0];
+		return 0L;
+	}
+
+	static boolean has(long[] bits, int cell) {
+		return (bits[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * Put a player's piece on a cell and check whether it wins.
+	 * It is up to the caller to make sure that the cell is empty.
+	 */
+	public void place(Player player, int col, int row) {
+		place(player, row*size + col);
+	}
+
+	/**
+	 * Put the next player's piece on a cell.
+	 * It is up to the caller to make sure that the cell is empty
+	 * and the game is not over.
+	 * @param cell index of the cell, row*size + col
+	 */
+	public void play(int cell) {
+		place(nextPlayer(), cell);
+	}
+
+	private void place(Player player, int cell) {
+		long[] bits;
+		int side;
+		if (player == Player.X) { bits = xbits; side = 0; }
+		else if (player == Player.O) { bits = obits; side = 1; }
+		else return;
+		bits[cell >>> 6] |= 1L << cell;
+		hash ^= zobrist[2*cell + side];
+		moveCount++;
+		if (winner == Player.NONE && makesLine(bits, size, winLength, cell % size, cell / size)) {
+			winner = player;
+			winMoveCount = moveCount;
+		}
+	}
+
+	/**
+	 * Remove the piece from a cell.
+	 * Moves must be undone in the reverse order they were played.
+	 * @param cell index of the cell, row*size + col
+	 */
+	public void undo(int cell) {
+		long mask = 1L << cell;
+		int word = cell >>> 6;
+		if ((xbits[word] & mask) != 0) {
+			xbits[word] &= ~mask;
+			hash ^= zobrist[2*cell];
+		}
+		else if ((obits[word] & mask) != 0) {
+			obits[word] &= ~mask;
+			hash ^= zobrist[2*cell + 1];
+		}
+		else return;
+		if (winner != Player.NONE && moveCount == winMoveCount) winner = Player.NONE;
+		moveCount--;
+	}
+
+	/**
+	 * Get the player who moves next. X always moves first.
+	 * @return Player.X or Player.O
+	 */
+	public Player nextPlayer() {
+		return (moveCount & 1) == 0 ? Player.X : Player.O;
+	}
+
+	/** @return Zobrist hash of the position */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Test if the piece at (col,row) is part of winLength pieces in a line.
+	 * Only the four lines through (col,row) are examined.
+	 */
+	static boolean makesLine(long[] bits, int size, int winLength, int col, int row) {
+		for(int d=0; d<DCOL.length; d++) {
+			int count = 1
+				+ countFrom(bits, size, winLength, col, row, DCOL[d], DROW[d])
+				+ countFrom(bits, size, winLength, col, row, -DCOL[d], -DROW[d]);
+			if (count >= winLength) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Count pieces in a line starting next to (col,row) and moving by (dcol,drow).
+	 * Stops after winLength-1 pieces, since more cannot matter.
+	 */
+	private static int countFrom(long[] bits, int size, int winLength,
+			int col, int row, int dcol, int drow) {
+		int count = 0;
+		int c = col + dcol;
+		int r = row + drow;
+		while (count < winLength-1 && c >= 0 && c < size && r >= 0 && r < size
+				&& has(bits, r*size + c)) {
+			count++;
+			c += dcol;
+			r += drow;
+		}
+		return count;
+	}
+
+	/** @return true if every cell is occupied */
+	public boolean isFull() {
+		return moveCount == cells;
+	}
+
+	/** @return true if a player has won or the board is full */
+	public boolean isGameOver() {
+		return winner != Player.NONE || moveCount == cells;
+	}
+
+	/**
+	 * Get the player who has won.
+	 * @return Player that completed a line, or Player.NONE if no winner.
+	 */
+	public Player winner() {
+		return winner;
+	}
+}
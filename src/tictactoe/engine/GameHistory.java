@@ -0,0 +1,118 @@
+package tictactoe.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The moves of a game as a tree, for undo and redo.
+ *
+ * Each node of the tree holds an immutable Position, so moving around
+ * the tree never copies or recomputes a board: undo goes to the parent
+ * node and redo goes to the child that was most recently visited,
+ * and both are O(1).
+ *
+ * Playing a different move after an undo starts a new variation.
+ * The old moves are kept, and playing a move that was already
+ * played from the same position goes back into that variation.
+ */
+public class GameHistory {
+	/** A position in the tree and the moves played from it. */
+	private static class Node {
+		final Position position;
+		final Node parent;
+		final List<Node> children = new ArrayList<>(1);
+		/** Child to go to on redo, or null. */
+		Node redo;
+
+		Node(Position position, Node parent) {
+			this.position = position;
+			this.parent = parent;
+		}
+	}
+
+	private final Node root;
+	private Node current;
+
+	/**
+	 * Create a history that starts with an empty board.
+	 * @param size number of rows and columns
+	 * @param winLength number of pieces in a line needed to win
+	 */
+	public GameHistory(int size, int winLength) {
+		root = new Node(new Position(size, winLength), null);
+		current = root;
+	}
+
+	/** @return the current position */
+	public Position getPosition() {
+		return current.position;
+	}
+
+	/**
+	 * Play a move from the current position.
+	 * @param cell index of an empty cell, row*size + col
+	 * @return the new position
+	 */
+	public Position play(int cell) {
+		Node next = null;
+		for(Node child : current.children) {
+			if (child.position.getLastMove() == cell) next = child;
+		}
+		if (next == null) {
+			next = new Node(current.position.play(cell), current);
+			current.children.add(next);
+		}
+		current.redo = next;
+		current = next;
+		return current.position;
+	}
+
+	/** @return true if there is a move to undo */
+	public boolean canUndo() {
+		return current.parent != null;
+	}
+
+	/**
+	 * Go back one move.
+	 * @return the cell of the move that was undone, or -1 if there are no moves
+	 */
+	public int undo() {
+		if (current.parent == null) return -1;
+		int move = current.position.getLastMove();
+		current = current.parent;
+		return move;
+	}
+
+	/** @return true if there is a move to redo */
+	public boolean canRedo() {
+		return current.redo != null;
+	}
+
+	/**
+	 * Play the move that was last undone from the current position.
+	 * @return the cell of the move, or -1 if there is nothing to redo
+	 */
+	public int redo() {
+		if (current.redo == null) return -1;
+		current = current.redo;
+		return current.position.getLastMove();
+	}
+
+	/**
+	 * Get the moves that have been played from the current position,
+	 * one for each variation.
+	 * @return cells of the moves, in the order they were first played
+	 */
+	public int[] getVariations() {
+		int[] moves = new int[current.children.size()];
+		for(int k=0; k<moves.length; k++) moves[k] = current.children.get(k).position.getLastMove();
+		return moves;
+	}
+
+	/** Go back to the empty board and forget all moves. */
+	public void clear() {
+		root.children.clear();
+		root.redo = null;
+		current = root;
+	}
+}
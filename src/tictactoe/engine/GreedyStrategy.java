@@ -0,0 +1,70 @@
+package tictactoe.engine;
+
+import java.util.SplittableRandom;
+
+import tictactoe.Player;
+
+/**
+ * A player that looks one move ahead.
+ * It wins if it can, otherwise blocks the opponent's winning move,
+ * otherwise plays next to its own pieces.
+ * Ties are broken at random.
+ */
+public class GreedyStrategy implements MoveStrategy {
+	private final SplittableRandom random;
+
+	public GreedyStrategy(long seed) {
+		this.random = new SplittableRandom(seed);
+	}
+
+	@Override
+	public int selectMove(Bitboard board) {
+		Player me = board.nextPlayer();
+		Player opponent = (me == Player.X) ? Player.O : Player.X;
+		int move = findWin(board, me);
+		if (move >= 0) return move;
+		move = findWin(board, opponent);
+		if (move >= 0) return move;
+
+		int size = board.getSize();
+		int best = -1;
+		int bestScore = -1;
+		int ties = 0;
+		for(int cell=0; cell<board.getCellCount(); cell++) {
+			if (! board.isEmpty(cell)) continue;
+			int score = friendlyNeighbors(board, me, cell % size, cell / size);
+			if (score > bestScore) {
+				best = cell;
+				bestScore = score;
+				ties = 1;
+			}
+			else if (score == bestScore && random.nextInt(++ties) == 0) best = cell;
+		}
+		return best;
+	}
+
+	/** @return a cell where player would win at once, or -1 */
+	private static int findWin(Bitboard board, Player player) {
+		int size = board.getSize();
+		for(int cell=0; cell<board.getCellCount(); cell++) {
+			if (! board.isEmpty(cell)) continue;
+			board.place(player, cell % size, cell / size);
+			boolean wins = board.winner() == player;
+			board.undo(cell);
+			if (wins) return cell;
+		}
+		return -1;
+	}
+
+	/** @return number of player's pieces next to (col,row) */
+	private static int friendlyNeighbors(Bitboard board, Player player, int col, int row) {
+		int size = board.getSize();
+		int count = 0;
+		for(int r=Math.max(0, row-1); r<=Math.min(size-1, row+1); r++) {
+			for(int c=Math.max(0, col-1); c<=Math.min(size-1, col+1); c++) {
+				if (board.pieceAt(r*size + c) == player) count++;
+			}
+		}
+		return count;
+	}
+}
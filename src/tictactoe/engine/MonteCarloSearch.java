@@ -0,0 +1,517 @@
+package tictactoe.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import tictactoe.Player;
+
+/**
+ * A computer player that uses Monte Carlo Tree Search (UCT)
+ * for boards that are too big to search exhaustively.
+ *
+ * The search uses root parallelisation: each thread grows its own tree
+ * from the current position, and when time is up the visit counts of
+ * the root moves are added together and the most visited move is chosen.
+ * Threads do not share any mutable state during the search, except
+ * a counter of playouts used.
+ *
+ * Playouts do not create objects. Each thread has its own scratch board,
+ * a buffer of empty cells, and a random number generator with
+ * primitive state. Only new tree nodes are allocated.
+ * A node gets its list of children when it is visited a second time,
+ * and the list grows as children are added, so the many leaves of a tree
+ * on a big board are small.
+ *
+ * The search stops after a number of playouts or a time limit,
+ * whichever comes first.
+ *
+ * A search with one thread runs in the caller's thread, so simulations
+ * that run many games in parallel do not need extra threads.
+ *
+ * Trees are kept between moves. When a search starts at a position that
+ * follows the position of the last search, each worker moves its root
+ * down to the subtree for the moves played since then, with its visit
+ * counts, and the rest of the old tree is dropped. The playout budget
+ * counts the playouts already in the reused subtree, so a search that
+ * reuses a big subtree stops sooner.
+ * ponder() grows the trees in the background during the opponent's turn,
+ * so the subtree for the opponent's reply is usually big already.
+ *
+ * A MonteCarloSearch must be used by one thread at a time.
+ */
+public class MonteCarloSearch implements PonderingStrategy {
+	/** UCT exploration constant. */
+	private static final double EXPLORATION = Math.sqrt(2.0);
+	/**
+	 * Exploration constant for the opponent's moves at the root while pondering.
+	 * It is small, so pondering searches the replies the opponent is likely
+	 * to play instead of spreading playouts over all replies.
+	 */
+	private static final double PONDER_EXPLORATION = 0.5;
+	/** How many playouts between checks of the clock. */
+	private static final int CLOCK_CHECK_INTERVAL = 64;
+	/** Seconds an idle search thread waits for work before it stops. */
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	private final int threads;
+	/** Threads for the workers, or null if one thread searches in the caller's thread. */
+	private ExecutorService executor;
+	/** One worker for each thread, reused between moves. */
+	private final Worker[] workers;
+	private long playoutBudget = Long.MAX_VALUE;
+	private long timeBudgetMillis = 1000;
+	/** Most playouts in a tree grown by pondering, to limit memory use. */
+	private long ponderBudget = 200_000;
+	/** Workers that are pondering, or null. */
+	private List<Future<?>> pondering;
+	/** Set to stop the workers, e.g. to stop pondering. */
+	private volatile boolean stopping;
+	/** Playouts left in the current search. */
+	private final AtomicLong playoutsLeft = new AtomicLong();
+	private long playouts;
+	private long elapsed;
+
+	/**
+	 * Create a search that uses all available processors.
+	 */
+	public MonteCarloSearch() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a search.
+	 * @param threads number of threads that grow trees
+	 */
+	public MonteCarloSearch(int threads) {
+		this(threads, 0);
+	}
+
+	/**
+	 * Create a search with its own random numbers, so searches with
+	 * different seeds play different games.
+	 * @param threads number of threads that grow trees
+	 * @param seed seed for the random numbers of the playouts
+	 */
+	public MonteCarloSearch(int threads, long seed) {
+		this.threads = threads;
+		if (threads > 1) executor = newExecutor(threads);
+		this.workers = new Worker[threads];
+		for(int k=0; k<threads; k++) workers[k] = new Worker(mix(seed + 0x9E3779B97F4A7C15L * (k+1)));
+	}
+
+	/** @return a well mixed, non-zero seed for xorshift, so close seeds give different numbers */
+	private static long mix(long seed) {
+		// the SplitMix64 finalizer
+		seed = (seed ^ (seed >>> 30)) * 0xBF58476D1CE4E5B9L;
+		seed = (seed ^ (seed >>> 27)) * 0x94D049BB133111EBL;
+		seed ^= seed >>> 31;
+		return (seed == 0) ? 0x9E3779B97F4A7C15L : seed;
+	}
+
+	/**
+	 * Set the maximum number of playouts for each move, for all threads together.
+	 * @param playouts maximum number of playouts, or Long.MAX_VALUE for no limit
+	 */
+	public void setPlayoutBudget(long playouts) {
+		this.playoutBudget = playouts;
+	}
+
+	/**
+	 * Set the maximum size of a tree grown by pondering.
+	 * @param playouts maximum number of playouts in the trees of all threads together
+	 */
+	public void setPonderBudget(long playouts) {
+		this.ponderBudget = playouts;
+	}
+
+	/**
+	 * Set the maximum time to choose a move.
+	 * @param millis time limit in milliseconds, or Long.MAX_VALUE for no limit
+	 */
+	public void setTimeBudget(long millis) {
+		this.timeBudgetMillis = millis;
+	}
+
+	/**
+	 * Choose a move for the next player.
+	 * @see tictactoe.engine.MoveStrategy#selectMove(Bitboard)
+	 */
+	@Override
+	public int selectMove(Bitboard position) {
+		return selectMove(position, null);
+	}
+
+	/**
+	 * Choose a move for the next player, stopping early if stop returns true.
+	 * @see tictactoe.engine.MoveStrategy#selectMove(Bitboard, BooleanSupplier)
+	 */
+	@Override
+	public int selectMove(Bitboard position, BooleanSupplier stop) {
+		stopPondering();
+		long start = System.nanoTime();
+		long deadline = (timeBudgetMillis == Long.MAX_VALUE) ? Long.MAX_VALUE
+				: start + timeBudgetMillis * 1_000_000L;
+		long reused = 0;
+		for(Worker worker : workers) {
+			worker.moveTo(position);
+			reused += worker.root.visits;
+		}
+		playoutsLeft.set((playoutBudget == Long.MAX_VALUE) ? Long.MAX_VALUE : playoutBudget - reused);
+		if (threads == 1) workers[0].search(deadline, stop, false);
+		else runWorkers(deadline, stop);
+		elapsed = System.nanoTime() - start;
+		// add up the visits to each root move
+		long[] visits = new long[position.getCellCount()];
+		playouts = -reused;
+		for(Worker worker : workers) {
+			playouts += worker.root.visits;
+			Node root = worker.root;
+			for(int k=0; k<root.childCount; k++) visits[root.children[k].move] += root.children[k].visits;
+		}
+		int best = -1;
+		for(int cell=0; cell<visits.length; cell++) {
+			if (position.isEmpty(cell) && (best < 0 || visits[cell] > visits[best])) best = cell;
+		}
+		return best;
+	}
+
+	/**
+	 * Grow the trees in the background from a position where the opponent
+	 * is to move, until stopPondering() or selectMove() is called or the
+	 * trees reach the ponder budget.
+	 * @see tictactoe.engine.PonderingStrategy#ponder(Bitboard)
+	 */
+	@Override
+	public void ponder(Bitboard position) {
+		stopPondering();
+		if (position.isGameOver()) return;
+		if (executor == null) executor = newExecutor(threads);
+		long size = 0;
+		for(Worker worker : workers) {
+			worker.moveTo(position);
+			size += worker.root.visits;
+		}
+		playoutsLeft.set(ponderBudget - size);
+		pondering = new ArrayList<>(threads);
+		for(Worker worker : workers) pondering.add(executor.submit(() -> worker.search(Long.MAX_VALUE, null, true)));
+	}
+
+	/**
+	 * Stop pondering, and keep the trees.
+	 * @see tictactoe.engine.PonderingStrategy#stopPondering()
+	 */
+	@Override
+	public void stopPondering() {
+		if (pondering == null) return;
+		stopping = true;
+		await(pondering);
+		pondering = null;
+		stopping = false;
+	}
+
+	/** Run all the workers in the thread pool and wait for them. */
+	private void runWorkers(long deadline, BooleanSupplier stop) {
+		List<Future<?>> results = new ArrayList<>(threads);
+		for(Worker worker : workers) results.add(executor.submit(() -> worker.search(deadline, stop, false)));
+		await(results);
+	}
+
+	/** Wait for workers to finish. */
+	private static void await(List<Future<?>> results) {
+		for(Future<?> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Monte Carlo search failed", e.getCause());
+			}
+		}
+	}
+
+	/** @return number of playouts in the last search */
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	/** @return playouts per second in the last search */
+	public double getPlayoutsPerSecond() {
+		return (elapsed == 0) ? 0 : playouts * 1.0E9 / elapsed;
+	}
+
+	/** Stop pondering and the search threads. */
+	@Override
+	public void shutdown() {
+		stopPondering();
+		if (executor != null) executor.shutdown();
+	}
+
+	/** Create threads for the workers. Idle threads stop, so a discarded search does not keep them. */
+	private static ExecutorService newExecutor(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+				KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "mcts");
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Take some playouts from the shared budget.
+	 * @return number of playouts this worker may do, or 0 if none left
+	 */
+	private long claimPlayouts(long wanted) {
+		long left = playoutsLeft.getAndAdd(-wanted);
+		if (left <= 0) return 0;
+		return Math.min(left, wanted);
+	}
+
+	/** A node in the search tree. */
+	private static class Node {
+		/** The parent node, or null for the root. */
+		Node parent;
+		/** The move that led to this node, or -1 for the root. */
+		final int move;
+		/** Children, or null. The array grows as children are added. */
+		Node[] children;
+		int childCount;
+		/** True after expand() was called. */
+		boolean expanded;
+		/** Cells that have a child, one bit per cell. */
+		long[] tried;
+		/** Number of moves that do not have a child yet. */
+		int untriedCount;
+		int visits;
+		/** Sum of results for the player who made move: 1 win, 0.5 draw. */
+		double wins;
+
+		Node(Node parent, int move) {
+			this.parent = parent;
+			this.move = move;
+		}
+
+		/**
+		 * Prepare to add children. This is called when the node is visited
+		 * again after the playout that created it, so leaves use little memory.
+		 * @param board the position of this node
+		 */
+		void expand(Bitboard board) {
+			expanded = true;
+			if (board.isGameOver()) return;
+			untriedCount = board.getCellCount() - board.getMoveCount();
+			tried = new long[(board.getCellCount() + 63) >>> 6];
+		}
+
+		/**
+		 * Add a child for a move that does not have one yet.
+		 * @param board the position of this node
+		 * @param index which of the untried moves, from 0 to untriedCount-1
+		 * @return the new child
+		 */
+		Node addChild(Bitboard board, int index) {
+			int cell = 0;
+			for(int k=index; ; cell++) {
+				if (board.isEmpty(cell) && (tried[cell >>> 6] & (1L << cell)) == 0 && k-- == 0) break;
+			}
+			tried[cell >>> 6] |= 1L << cell;
+			untriedCount--;
+			if (children == null) children = new Node[Math.min(4, childCount + untriedCount + 1)];
+			else if (childCount == children.length) children = Arrays.copyOf(children, 2*childCount);
+			Node child = new Node(this, cell);
+			children[childCount++] = child;
+			return child;
+		}
+
+		/** Choose the child with the best UCT value. */
+		Node selectChild(double exploration) {
+			double logVisits = Math.log(visits);
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for(int k=0; k<childCount; k++) {
+				Node child = children[k];
+				double value = child.wins / child.visits
+						+ exploration * Math.sqrt(logVisits / child.visits);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+	}
+
+	/** Grows one tree. Each worker is used by one thread at a time. */
+	private class Worker {
+		private Bitboard position;
+		private Bitboard scratch;
+		/** Empty cells during a playout. */
+		private int[] empty;
+		private Node root;
+		/** State of the xorshift random number generator. */
+		private long seed;
+		/** True while the worker is pondering. */
+		private boolean pondering;
+
+		Worker(long seed) {
+			this.seed = seed;
+		}
+
+		/**
+		 * Move the root to a position. If the position follows the current
+		 * root position, the subtree for the moves played since then
+		 * becomes the root. Otherwise a new tree is started.
+		 */
+		void moveTo(Bitboard board) {
+			if (root == null || position.getSize() != board.getSize()
+					|| position.getWinLength() != board.getWinLength()
+					|| ! follows(board, position)) {
+				reset(board);
+				return;
+			}
+			// play the new moves in any order, since they lead to the same position
+			while (position.getMoveCount() < board.getMoveCount()) {
+				Player player = position.nextPlayer();
+				int move = -1;
+				for(int cell=0; cell<board.getCellCount() && move < 0; cell++) {
+					if (position.isEmpty(cell) && board.pieceAt(cell) == player) move = cell;
+				}
+				if (move < 0 || position.isGameOver()) {
+					reset(board);
+					return;
+				}
+				advance(move);
+			}
+		}
+
+		/** Make the subtree for a move the new root, and drop the rest of the tree. */
+		void advance(int move) {
+			position.play(move);
+			Node next = null;
+			for(int k=0; k<root.childCount; k++) if (root.children[k].move == move) next = root.children[k];
+			if (next == null) next = new Node(null, move);
+			next.parent = null;
+			root = next;
+		}
+
+		/** Start a new tree at a position. */
+		void reset(Bitboard board) {
+			if (position == null || position.getSize() != board.getSize()
+					|| position.getWinLength() != board.getWinLength()) {
+				position = new Bitboard(board);
+				scratch = new Bitboard(board);
+				empty = new int[board.getCellCount()];
+			}
+			else position.copyFrom(board);
+			root = new Node(null, -1);
+		}
+
+		/**
+		 * Do playouts until the budget or time is used up, or the search is stopped.
+		 * @param ponder true if the opponent is to move at the root and will choose the move
+		 */
+		void search(long deadline, BooleanSupplier stop, boolean ponder) {
+			pondering = ponder;
+			while (true) {
+				long batch = claimPlayouts(CLOCK_CHECK_INTERVAL);
+				if (batch == 0) return;
+				for(long k=0; k<batch; k++) playout();
+				if (System.nanoTime() >= deadline || stopping) return;
+				if (stop != null && stop.getAsBoolean()) return;
+			}
+		}
+
+		/** Select a leaf, expand it, play a random game, and update the tree. */
+		private void playout() {
+			Bitboard board = scratch;
+			board.copyFrom(position);
+			Node node = root;
+			// selection
+			while (node.expanded && node.untriedCount == 0 && node.childCount > 0) {
+				node = node.selectChild((node == root && pondering) ? PONDER_EXPLORATION : EXPLORATION);
+				board.play(node.move);
+			}
+			// expansion
+			if (! node.expanded) node.expand(board);
+			if (node.untriedCount > 0) {
+				node = node.addChild(board, nextInt(node.untriedCount));
+				board.play(node.move);
+			}
+			// simulation
+			Player winner = rollout(board);
+			// backpropagation
+			for(; node != null; node = node.parent) {
+				node.visits++;
+				if (winner == Player.NONE) node.wins += 0.5;
+				else if (node.move >= 0 && board.pieceAt(node.move) == winner) node.wins += 1.0;
+			}
+		}
+
+		/** Play random moves until the game is over. */
+		private Player rollout(Bitboard board) {
+			int count = 0;
+			int cells = board.getCellCount();
+			for(int cell=0; cell<cells; cell++) if (board.isEmpty(cell)) empty[count++] = cell;
+			while (! board.isGameOver()) {
+				int k = nextInt(count);
+				int cell = empty[k];
+				empty[k] = empty[--count];
+				board.play(cell);
+			}
+			return board.winner();
+		}
+
+		/** @return a random number from 0 to bound-1 */
+		private int nextInt(int bound) {
+			// xorshift64
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			return (int)((seed >>> 33) % bound);
+		}
+	}
+
+	/** @return true if later has all the pieces of earlier, and more moves or the same */
+	private static boolean follows(Bitboard later, Bitboard earlier) {
+		if (later.getMoveCount() < earlier.getMoveCount()) return false;
+		for(int cell=0; cell<earlier.getCellCount(); cell++) {
+			if (! earlier.isEmpty(cell) && later.pieceAt(cell) != earlier.pieceAt(cell)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Measure playouts per second for the first moves of a game.
+	 * Arguments: board size, win length, threads, milliseconds per move.
+	 */
+	public static void main(String[] args) {
+		int size = (args.length > 0) ? Integer.parseInt(args[0]) : 11;
+		int winLength = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+		int threads = (args.length > 2) ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		long millis = (args.length > 3) ? Long.parseLong(args[3]) : 1000;
+		MonteCarloSearch search = new MonteCarloSearch(threads);
+		search.setTimeBudget(millis);
+		Bitboard board = new Bitboard(size, winLength);
+		System.out.printf("%dx%d board, %d in a row, %d threads, %d ms per move\n",
+				size, size, winLength, threads, millis);
+		for(int n=0; n<5; n++) {
+			int move = search.selectMove(board);
+			System.out.printf("move %d  playouts %d  playouts/sec %.0f\n",
+					move, search.getPlayouts(), search.getPlayoutsPerSecond());
+			board.play(move);
+		}
+		search.shutdown();
+	}
+}
@@ -0,0 +1,35 @@
+package tictactoe.engine;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A way of choosing moves, such as a computer player.
+ */
+public interface MoveStrategy {
+	/**
+	 * Choose a move for the next player.
+	 * The board must be in the same state when this method returns.
+	 * @param board a game that is not over
+	 * @return index of an empty cell, row*size + col
+	 */
+	int selectMove(Bitboard board);
+
+	/**
+	 * Choose a move, but stop thinking when asked to.
+	 * Strategies that search deeper with more time return the best
+	 * move found before stop returned true. The default ignores stop.
+	 * @param board a game that is not over
+	 * @param stop asked periodically whether to stop, e.g. when time is up
+	 * @return index of an empty cell, row*size + col
+	 */
+	default int selectMove(Bitboard board, BooleanSupplier stop) {
+		return selectMove(board);
+	}
+
+	/**
+	 * Stop any threads the strategy uses. It must not be used after this.
+	 * The default does nothing.
+	 */
+	default void shutdown() {
+	}
+}
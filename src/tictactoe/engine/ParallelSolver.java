@@ -0,0 +1,266 @@
+package tictactoe.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import tictactoe.Player;
+
+/**
+ * A game-tree search that uses several threads in a ForkJoinPool.
+ *
+ * The tree is split with the Young Brothers Wait policy: at each node
+ * the first (eldest) move is searched before the other moves, and only
+ * then are the remaining moves (young brothers) forked as parallel tasks.
+ * Searching the eldest move first gives a good bound, so the young
+ * brothers can usually be cut off quickly. Near the leaves, subtrees are
+ * searched by a sequential AlphaBetaSearch in the worker thread.
+ *
+ * Threads share information without locks:
+ * <ul>
+ * <li>all threads use one TranspositionTable with lockless entries;</li>
+ * <li>each split node publishes its current alpha in a volatile field,
+ *     which children read when they start, so later siblings search with
+ *     the best bound found so far;</li>
+ * <li>when a node gets a cutoff it sets a volatile flag, and all tasks
+ *     below it stop at their next check.</li>
+ * </ul>
+ *
+ * Run main() to measure nodes/second and speedup for each thread count.
+ */
+public class ParallelSolver implements MoveStrategy {
+	/** Subtrees with this depth or less are searched by one thread. */
+	private static final int SEQUENTIAL_DEPTH = 5;
+
+	private final ForkJoinPool pool;
+	private final TranspositionTable table;
+	private final int maxDepth;
+	/** Sequential search for each worker thread. */
+	private final ThreadLocal<AlphaBetaSearch> searchers;
+	private final LongAdder nodes = new LongAdder();
+	/** Asked by all tasks whether to stop the whole search, or null. */
+	private volatile BooleanSupplier stopSignal;
+	/** Set when a task saw stopSignal return true, so the current depth is not finished. */
+	private volatile boolean aborted;
+	private int score;
+	private long elapsed;
+
+	/**
+	 * Create a solver that uses all available processors.
+	 * @param maxDepth maximum number of moves to look ahead
+	 * @param megabytes memory budget for the shared transposition table
+	 */
+	public ParallelSolver(int maxDepth, int megabytes) {
+		this(maxDepth, megabytes, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a solver.
+	 * @param maxDepth maximum number of moves to look ahead
+	 * @param megabytes memory budget for the shared transposition table
+	 * @param threads number of threads to use
+	 */
+	public ParallelSolver(int maxDepth, int megabytes, int threads) {
+		this.maxDepth = maxDepth;
+		this.table = new TranspositionTable(megabytes);
+		this.pool = new ForkJoinPool(threads);
+		this.searchers = ThreadLocal.withInitial(() -> new AlphaBetaSearch(maxDepth, table));
+	}
+
+	/**
+	 * Choose the best move for the next player, using iterative deepening.
+	 * @see tictactoe.engine.MoveStrategy#selectMove(Bitboard)
+	 */
+	@Override
+	public int selectMove(Bitboard position) {
+		return selectMove(position, null);
+	}
+
+	/**
+	 * Choose the best move found before stop returns true, using iterative deepening.
+	 * The move is from the deepest search that finished.
+	 * @see tictactoe.engine.MoveStrategy#selectMove(Bitboard, BooleanSupplier)
+	 */
+	@Override
+	public int selectMove(Bitboard position, BooleanSupplier stop) {
+		long start = System.nanoTime();
+		stopSignal = stop;
+		aborted = false;
+		nodes.reset();
+		table.newSearch();
+		int empty = position.getCellCount() - position.getMoveCount();
+		int depthLimit = Math.min(maxDepth, empty);
+		int best = -1;
+		for(int depth=1; depth<=depthLimit; depth++) {
+			SplitTask root = new SplitTask(null, new Bitboard(position), depth, 0,
+					-AlphaBetaSearch.INFINITY, AlphaBetaSearch.INFINITY);
+			int s = pool.invoke(root);
+			if (aborted) break;
+			score = s;
+			best = root.bestMove;
+			if (Math.abs(score) > AlphaBetaSearch.WIN_THRESHOLD) break;
+		}
+		stopSignal = null;
+		if (best < 0) best = AlphaBetaSearch.firstEmpty(position);
+		elapsed = System.nanoTime() - start;
+		return best;
+	}
+
+	/** @return score of the last search for the player who moved */
+	public int getScore() {
+		return score;
+	}
+
+	/** @return number of positions examined by the last search */
+	public long getNodes() {
+		return nodes.sum();
+	}
+
+	/** @return time used by the last search, in nanoseconds */
+	public long getElapsedNanos() {
+		return elapsed;
+	}
+
+	/** Stop the worker threads. */
+	@Override
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Search of one node of the tree.
+	 * The task owns its board, so no other thread changes it.
+	 * ForkJoinTask is Serializable, but tasks are never serialized.
+	 */
+	@SuppressWarnings("serial")
+	private class SplitTask extends RecursiveTask<Integer> {
+		private final SplitTask parent;
+		private final Bitboard board;
+		private final int depth;
+		private final int ply;
+		/** Window when created. Children may narrow it when they start. */
+		private int alpha;
+		private int beta;
+		/** Best score so far, read by children that start later. */
+		private volatile int currentAlpha;
+		/** Set when this node gets a cutoff, so tasks below it can stop. */
+		private volatile boolean cutoff;
+		private int bestMove = -1;
+
+		SplitTask(SplitTask parent, Bitboard board, int depth, int ply, int alpha, int beta) {
+			this.parent = parent;
+			this.board = board;
+			this.depth = depth;
+			this.ply = ply;
+			this.alpha = alpha;
+			this.beta = beta;
+		}
+
+		/** @return true if this node or any node above it was cut off, or the search must stop */
+		boolean isStopped() {
+			for(SplitTask t = this; t != null; t = t.parent) if (t.cutoff) return true;
+			BooleanSupplier stop = stopSignal;
+			if (stop == null || ! stop.getAsBoolean()) return false;
+			aborted = true;
+			return true;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (parent != null) {
+				// use the best bound the parent has found so far
+				beta = Math.min(beta, -parent.currentAlpha);
+				if (alpha >= beta) return alpha;
+			}
+			if (isStopped()) return 0;
+			if (board.winner() != Player.NONE) return -(AlphaBetaSearch.WIN - ply);
+			if (board.isFull()) return 0;
+			if (depth <= SEQUENTIAL_DEPTH && parent != null) return searchSequential();
+
+			int alphaOrig = alpha;
+			long hash = board.getHash();
+			int ttMove = -1;
+			long entry = table.probe(hash);
+			if (entry != TranspositionTable.MISS) ttMove = TranspositionTable.move(entry);
+			int cells = board.getCellCount();
+			int[] moves = new int[cells];
+			int count = AlphaBetaSearch.generateMoves(board, moves, new int[cells], ttMove, null);
+			nodes.increment();
+
+			// search the eldest brother first, in this thread
+			int best = -AlphaBetaSearch.INFINITY;
+			currentAlpha = alpha;
+			SplitTask eldest = child(moves[0]);
+			best = -eldest.compute();
+			bestMove = moves[0];
+			if (isStopped()) return 0;
+			if (best > alpha) alpha = currentAlpha = best;
+			if (alpha >= beta) {
+				AlphaBetaSearch.store(table, hash, best, alphaOrig, beta, depth, ply, bestMove);
+				return best;
+			}
+
+			// then the young brothers in parallel
+			SplitTask[] children = new SplitTask[count - 1];
+			for(int k=1; k<count; k++) children[k-1] = child(moves[k]);
+			for(int k=children.length-1; k>=0; k--) children[k].fork();
+			for(int k=0; k<children.length; k++) {
+				int s = -children[k].join();
+				if (isStopped()) continue; // wait for the rest, but ignore results
+				if (s > best) {
+					best = s;
+					bestMove = moves[k+1];
+				}
+				if (best > alpha) alpha = currentAlpha = best;
+				if (alpha >= beta) cutoff = true;
+			}
+			if (parent != null && parent.isStopped()) return 0;
+			AlphaBetaSearch.store(table, hash, best, alphaOrig, beta, depth, ply, bestMove);
+			return best;
+		}
+
+		/** Make a task for the position after a move. */
+		private SplitTask child(int cell) {
+			Bitboard next = new Bitboard(board);
+			next.play(cell);
+			return new SplitTask(this, next, depth-1, ply+1, -beta, -alpha);
+		}
+
+		private int searchSequential() {
+			AlphaBetaSearch searcher = searchers.get();
+			long before = searcher.getNodes();
+			int s = searcher.search(board, depth, alpha, beta, ply, this::isStopped);
+			nodes.add(searcher.getNodes() - before);
+			return searcher.wasStopped() ? 0 : s;
+		}
+	}
+
+	/**
+	 * Solve the empty board with 1, 2, 4, ... threads and print
+	 * the nodes/second and speedup over one thread.
+	 * Arguments: board size, win length, depth, max threads.
+	 */
+	public static void main(String[] args) {
+		int size = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+		int winLength = (args.length > 1) ? Integer.parseInt(args[1]) : size;
+		int depth = (args.length > 2) ? Integer.parseInt(args[2]) : size*size;
+		int maxThreads = (args.length > 3) ? Integer.parseInt(args[3])
+				: Runtime.getRuntime().availableProcessors();
+		Bitboard board = new Bitboard(size, winLength);
+		System.out.printf("%dx%d board, %d in a row, depth %d\n", size, size, winLength, depth);
+		System.out.println("Threads  Move  Score     Nodes     Time(ms)  Nodes/sec   Speedup");
+		double baseTime = 0;
+		for(int threads=1; threads<=maxThreads; threads *= 2) {
+			ParallelSolver solver = new ParallelSolver(depth, 64, threads);
+			int move = solver.selectMove(board);
+			double millis = solver.getElapsedNanos() / 1.0E6;
+			if (threads == 1) baseTime = millis;
+			System.out.printf("%7d  %4d  %7d  %10d  %9.1f  %10.0f  %7.2f\n",
+					threads, move, solver.getScore(), solver.getNodes(), millis,
+					solver.getNodes() / (millis / 1000.0), baseTime / millis);
+			solver.shutdown();
+			if (threads < maxThreads && 2*threads > maxThreads) threads = maxThreads / 2;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package tictactoe.engine;
+
+/**
+ * A computer player that can think while the opponent is thinking.
+ *
+ * After the player moves, ponder() searches the position in the background.
+ * When the opponent has moved, selectMove() stops pondering and keeps the
+ * part of the search that follows the opponent's move, so the player can
+ * answer sooner or with a better move.
+ * A PonderingStrategy is used by one thread at a time.
+ */
+public interface PonderingStrategy extends MoveStrategy {
+	/**
+	 * Start searching a position in the background, and return at once.
+	 * Pondering stops by itself after a while, so it does not use memory
+	 * without limit if the opponent never moves.
+	 * @param board a position where the opponent is to move. It is copied.
+	 */
+	void ponder(Bitboard board);
+
+	/** Stop pondering and wait until the background search has stopped. */
+	void stopPondering();
+}
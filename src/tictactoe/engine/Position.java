@@ -0,0 +1,247 @@
+package tictactoe.engine;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import tictactoe.Player;
+
+/**
+ * An immutable tic-tac-toe position.
+ *
+ * Playing a move returns a new Position and leaves this one unchanged,
+ * so positions can be kept in a game history or shared between threads
+ * without copying or locking.
+ *
+ * The bits of a position are never changed after it is created.
+ * A move copies only the bitset of the player who moved; the other
+ * player's bitset is shared with the parent position. Each position
+ * has a reference to the position it came from, so a line of play
+ * can be undone by following parents.
+ *
+ * Use Bitboard for search, where playing and undoing moves in place
+ * is faster. Bitboard.copyFrom(Position) copies a position to a board.
+ *
+ * A position can be saved as a snapshot of its moves with writeTo and
+ * restored, with its history, by readFrom. The snapshot is
+ * board size, win length, and move count, then the cell of each move,
+ * all as unsigned 16-bit values, so boards up to 255x255 can be saved.
+ */
+public final class Position {
+	private final int size;
+	private final int winLength;
+	/** Cells occupied by X, 64 cells per word. Never modified. */
+	final long[] xbits;
+	/** Cells occupied by O, 64 cells per word. Never modified. */
+	final long[] obits;
+	/** Random keys for each (cell,player), shared by all positions. */
+	private final long[] zobrist;
+	private final long hash;
+	private final int moveCount;
+	private final Player winner;
+	/** Value of moveCount after the winning move. */
+	final int winMoveCount;
+	/** Cell of the last move, or -1 for the empty board. */
+	private final int lastMove;
+	/** Position before the last move, or null for the empty board. */
+	private final Position parent;
+
+	/**
+	 * Create an empty board.
+	 * @param size number of rows and columns
+	 * @param winLength number of pieces in a line needed to win, from 1 to size
+	 */
+	public Position(int size, int winLength) {
+		if (size < 1) throw new IllegalArgumentException("Board size must be positive");
+		if (winLength < 1 || winLength > size)
+			throw new IllegalArgumentException("Win length must be 1 - "+size);
+		this.size = size;
+		this.winLength = winLength;
+		this.xbits = new long[(size*size+63) >>> 6];
+		this.obits = new long[xbits.length];
+		this.zobrist = Zobrist.keys(size*size);
+		this.hash = 0;
+		this.moveCount = 0;
+		this.winner = Player.NONE;
+		this.winMoveCount = 0;
+		this.lastMove = -1;
+		this.parent = null;
+	}
+
+	/** Create the position after a move. */
+	private Position(Position parent, long[] xbits, long[] obits, long hash,
+			Player winner, int winMoveCount, int move) {
+		this.size = parent.size;
+		this.winLength = parent.winLength;
+		this.xbits = xbits;
+		this.obits = obits;
+		this.zobrist = parent.zobrist;
+		this.hash = hash;
+		this.moveCount = parent.moveCount + 1;
+		this.winner = winner;
+		this.winMoveCount = winMoveCount;
+		this.lastMove = move;
+		this.parent = parent;
+	}
+
+	/**
+	 * Get the position after the next player moves to a cell.
+	 * @param cell index of an empty cell, row*size + col
+	 * @return the new position
+	 * @throws IllegalArgumentException if the cell is occupied or the game is over
+	 */
+	public Position play(int cell) {
+		if (cell < 0 || cell >= getCellCount() || ! isEmpty(cell))
+			throw new IllegalArgumentException("Cell "+cell+" is not empty");
+		if (isGameOver()) throw new IllegalArgumentException("Game is over");
+		Player player = nextPlayer();
+		long[] x = xbits;
+		long[] o = obits;
+		long[] bits;
+		if (player == Player.X) bits = x = xbits.clone();
+		else bits = o = obits.clone();
+		bits[cell >>> 6] |= 1L << cell;
+		long newHash = hash ^ zobrist[2*cell + (player == Player.X ? 0 : 1)];
+		Player newWinner = winner;
+		int newWinMoveCount = winMoveCount;
+		if (winner == Player.NONE
+				&& Bitboard.makesLine(bits, size, winLength, cell % size, cell / size)) {
+			newWinner = player;
+			newWinMoveCount = moveCount + 1;
+		}
+		return new Position(this, x, o, newHash, newWinner, newWinMoveCount, cell);
+	}
+
+	/**
+	 * Get the position after a player moves to a cell.
+	 * @see #play(int)
+	 */
+	public Position play(int col, int row) {
+		return play(row*size + col);
+	}
+
+	/** @return number of bytes writeTo will write */
+	public int getSnapshotSize() {
+		return 6 + 2*moveCount;
+	}
+
+	/**
+	 * Write a snapshot of the moves that led to this position.
+	 * @param buffer where to write it, at the buffer's position
+	 * @throws BufferOverflowException if there are fewer than
+	 *     getSnapshotSize() bytes remaining
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		if (buffer.remaining() < getSnapshotSize()) throw new BufferOverflowException();
+		int start = buffer.position();
+		buffer.putChar((char)size).putChar((char)winLength).putChar((char)moveCount);
+		buffer.position(start + getSnapshotSize());
+		// follow parents back to the first move, writing moves from last to first
+		for(Position p = this; p.parent != null; p = p.parent) {
+			buffer.putChar(start + 6 + 2*(p.moveCount-1), (char)p.lastMove);
+		}
+	}
+
+	/**
+	 * Read a snapshot written by writeTo.
+	 * @param buffer a buffer positioned at the snapshot
+	 * @return the position, with a parent for each move
+	 * @throws IllegalArgumentException if the snapshot has an illegal move
+	 */
+	public static Position readFrom(ByteBuffer buffer) {
+		int size = buffer.getChar();
+		int winLength = buffer.getChar();
+		int count = buffer.getChar();
+		Position position = new Position(size, winLength);
+		for(int k=0; k<count; k++) position = position.play(buffer.getChar());
+		return position;
+	}
+
+	/** @return position before the last move, or null for the empty board */
+	public Position getParent() {
+		return parent;
+	}
+
+	/** @return cell of the last move, or -1 for the empty board */
+	public int getLastMove() {
+		return lastMove;
+	}
+
+	/** @return number of rows (and columns) on the board */
+	public int getSize() {
+		return size;
+	}
+
+	/** @return number of pieces in a line needed to win */
+	public int getWinLength() {
+		return winLength;
+	}
+
+	/** @return number of cells on the board */
+	public int getCellCount() {
+		return size*size;
+	}
+
+	/** @return number of pieces on the board */
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	/** @return Zobrist hash of the position, the same as a Bitboard with the same pieces */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Test whether a cell is empty.
+	 * @param cell index of a cell on the board, row*size + col
+	 * @return true if the cell is not occupied
+	 */
+	public boolean isEmpty(int cell) {
+		return ((xbits[cell >>> 6] | obits[cell >>> 6]) & (1L << cell)) == 0;
+	}
+
+	/**
+	 * Get the player who occupies a cell.
+	 * @param cell index of a cell on the board, row*size + col
+	 * @return the player at cell, or Player.NONE if the cell is empty
+	 */
+	public Player pieceAt(int cell) {
+		if (Bitboard.has(xbits, cell)) return Player.X;
+		if (Bitboard.has(obits, cell)) return Player.O;
+		return Player.NONE;
+	}
+
+	/**
+	 * Get the player who occupies a cell.
+	 * @return the player at (col,row), or Player.NONE if the cell is empty
+	 */
+	public Player pieceAt(int col, int row) {
+		return pieceAt(row*size + col);
+	}
+
+	/**
+	 * Get the player who moves next. X always moves first.
+	 * @return Player.X or Player.O
+	 */
+	public Player nextPlayer() {
+		return (moveCount & 1) == 0 ? Player.X : Player.O;
+	}
+
+	/** @return true if every cell is occupied */
+	public boolean isFull() {
+		return moveCount == getCellCount();
+	}
+
+	/** @return true if a player has won or the board is full */
+	public boolean isGameOver() {
+		return winner != Player.NONE || isFull();
+	}
+
+	/**
+	 * Get the player who has won.
+	 * @return Player that completed a line, or Player.NONE if no winner.
+	 */
+	public Player winner() {
+		return winner;
+	}
+}
@@ -0,0 +1,26 @@
+package tictactoe.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * A player that chooses a random empty cell.
+ * Useful as a baseline opponent and for fast simulations.
+ */
+public class RandomStrategy implements MoveStrategy {
+	private final SplittableRandom random;
+
+	public RandomStrategy(long seed) {
+		this.random = new SplittableRandom(seed);
+	}
+
+	@Override
+	public int selectMove(Bitboard board) {
+		int empty = board.getCellCount() - board.getMoveCount();
+		int n = random.nextInt(empty);
+		// find the n-th empty cell
+		for(int cell=0; cell<board.getCellCount(); cell++) {
+			if (board.isEmpty(cell) && n-- == 0) return cell;
+		}
+		return -1;
+	}
+}
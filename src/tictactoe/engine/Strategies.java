@@ -0,0 +1,77 @@
+package tictactoe.engine;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Create computer players by name, for command line tools.
+ *
+ * Names are:
+ * <pre>
+ *   random         a random empty cell
+ *   greedy         win, block, or play next to own pieces
+ *   search[:depth] alpha-beta search (default depth 4)
+ *   mcts[:playouts] Monte Carlo tree search, one thread (default 2000 playouts)
+ *   tablebase:file perfect play from a file made by TablebaseGenerator.
+ *                  It only plays boards of the size and win length of the file.
+ * </pre>
+ */
+public final class Strategies {
+	/** Names of the strategies, for usage messages. */
+	public static final String NAMES = "random, greedy, search[:depth], mcts[:playouts], tablebase:file";
+
+	private Strategies() { }
+
+	/**
+	 * Create a player.
+	 * Each call creates a new object, so each thread can have its own.
+	 * @param spec name of the strategy, with optional parameter after a colon
+	 * @param seed seed for strategies that use random numbers
+	 * @return the strategy
+	 * @throws IllegalArgumentException if spec is not a known strategy
+	 */
+	public static MoveStrategy create(String spec, long seed) {
+		String name = spec;
+		String arg = null;
+		int colon = spec.indexOf(':');
+		if (colon >= 0) {
+			name = spec.substring(0, colon);
+			arg = spec.substring(colon+1);
+		}
+		if (name.equalsIgnoreCase("tablebase")) return openTablebase(spec, arg);
+		int param = -1;
+		if (arg != null) {
+			try {
+				param = Integer.parseInt(arg);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid parameter in "+spec);
+			}
+		}
+		switch (name.toLowerCase()) {
+		case "random":
+			return new RandomStrategy(seed);
+		case "greedy":
+			return new GreedyStrategy(seed);
+		case "search":
+			return new AlphaBetaSearch((param > 0) ? param : 4, 4);
+		case "mcts":
+			MonteCarloSearch mcts = new MonteCarloSearch(1, seed);
+			mcts.setPlayoutBudget((param > 0) ? param : 2000);
+			mcts.setTimeBudget(Long.MAX_VALUE);
+			return mcts;
+		default:
+			throw new IllegalArgumentException("Unknown strategy "+spec+". Use one of: "+NAMES);
+		}
+	}
+
+	/** Open a tablebase file. The file is memory-mapped, so players in different threads share it. */
+	private static Tablebase openTablebase(String spec, String file) {
+		if (file == null || file.isEmpty())
+			throw new IllegalArgumentException("Missing file name in "+spec+", e.g. tablebase:3x3.ttbb");
+		try {
+			return Tablebase.open(Paths.get(file));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot read tablebase "+file+": "+e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package tictactoe.engine;
+
+/**
+ * The 8 symmetries of a square board (rotations and reflections).
+ * Positions that are the same after a symmetry have the same value,
+ * so a table of positions only needs to store one of them,
+ * the canonical form.
+ */
+final class Symmetry {
+	/** Number of symmetries of a square. */
+	static final int COUNT = 8;
+
+	private final int size;
+	/** map[s][cell] is the cell that cell moves to under symmetry s. */
+	private final int[][] map;
+	/** inverse[s][cell] is the cell that moves to cell under symmetry s. */
+	private final int[][] inverse;
+
+	Symmetry(int size) {
+		this.size = size;
+		int cells = size*size;
+		map = new int[COUNT][cells];
+		inverse = new int[COUNT][cells];
+		for(int s=0; s<COUNT; s++) {
+			for(int row=0; row<size; row++) {
+				for(int col=0; col<size; col++) {
+					int image = transform(s, col, row);
+					map[s][row*size + col] = image;
+					inverse[s][image] = row*size + col;
+				}
+			}
+		}
+	}
+
+	/** Apply symmetry s to (col,row). s = 4*reflect + number of quarter turns. */
+	private int transform(int s, int col, int row) {
+		int n = size - 1;
+		if (s >= 4) col = n - col; // reflect
+		for(int turn=0; turn<(s & 3); turn++) {
+			int c = n - row;
+			row = col;
+			col = c;
+		}
+		return row*size + col;
+	}
+
+	/** @return bitmask with each set bit moved by symmetry s */
+	long apply(int s, long mask) {
+		long result = 0L;
+		int[] m = map[s];
+		while (mask != 0) {
+			int cell = Long.numberOfTrailingZeros(mask);
+			result |= 1L << m[cell];
+			mask &= mask - 1;
+		}
+		return result;
+	}
+
+	/** @return the cell that a cell moves to under symmetry s */
+	int map(int s, int cell) {
+		return map[s][cell];
+	}
+
+	/** @return the cell that moves to cell under symmetry s */
+	int unmap(int s, int cell) {
+		return inverse[s][cell];
+	}
+}
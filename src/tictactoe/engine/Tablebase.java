@@ -0,0 +1,192 @@
+package tictactoe.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import tictactoe.Player;
+
+/**
+ * A precomputed table of the value and best move of every reachable
+ * position, read from a file made by TablebaseGenerator.
+ *
+ * The file is memory-mapped, so the table is not copied onto the heap,
+ * lookups do not create objects, and several processes using the
+ * same file share one copy in the operating system's page cache.
+ *
+ * Positions that differ only by a rotation or reflection are stored once.
+ * A lookup finds the canonical form of the position, then looks it up
+ * in an open-addressing hash table, so lookup time does not depend on
+ * the number of positions.
+ *
+ * File format (big-endian):
+ * <pre>
+ *   int magic, int version, int size, int winLength,
+ *   int capacity (number of slots, a power of 2), int count, 8 bytes unused,
+ *   long[capacity] slots
+ * </pre>
+ * Each non-empty slot is key &lt;&lt; 16 | (move+1) &lt;&lt; 8 | value.
+ * The key is the X bitmask of the canonical position in the low
+ * cells bits and the O bitmask in the next cells bits.
+ * The move is in the canonical orientation.
+ *
+ * Only boards with up to MAX_CELLS cells (4x4) fit in this format.
+ */
+public class Tablebase implements MoveStrategy {
+	/** Value of a position where the player to move loses with best play. */
+	public static final int LOSS = 1;
+	/** Value of a position that is a draw with best play. */
+	public static final int DRAW = 2;
+	/** Value of a position where the player to move wins with best play. */
+	public static final int WIN = 3;
+	/** Largest number of cells on a board in a tablebase. */
+	public static final int MAX_CELLS = 16;
+
+	static final int MAGIC = 0x54544242; // "TTBB"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+
+	private final int size;
+	private final int winLength;
+	private final int count;
+	private final int capacityBits;
+	private final LongBuffer slots;
+	private final Symmetry symmetry;
+
+	private Tablebase(int size, int winLength, int capacity, int count, LongBuffer slots) {
+		this.size = size;
+		this.winLength = winLength;
+		this.count = count;
+		this.capacityBits = Integer.numberOfTrailingZeros(capacity);
+		this.slots = slots;
+		this.symmetry = new Symmetry(size);
+	}
+
+	/**
+	 * Open a tablebase file.
+	 * @param file a file written by TablebaseGenerator
+	 * @return the tablebase
+	 * @throws IOException if the file cannot be read or is not a tablebase
+	 */
+	public static Tablebase open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// the mapping stays valid after the channel is closed
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+				throw new IOException(file+" is not a tablebase");
+			if (buffer.getInt(4) != VERSION)
+				throw new IOException(file+" has unsupported version "+buffer.getInt(4));
+			int size = buffer.getInt(8);
+			int winLength = buffer.getInt(12);
+			int capacity = buffer.getInt(16);
+			int count = buffer.getInt(20);
+			if (Integer.bitCount(capacity) != 1 || buffer.remaining() < HEADER_SIZE + 8L*capacity)
+				throw new IOException(file+" is truncated or corrupt");
+			LongBuffer slots = buffer.position(HEADER_SIZE).slice().asLongBuffer();
+			return new Tablebase(size, winLength, capacity, count, slots);
+		}
+	}
+
+	/** @return board size of positions in this table */
+	public int getSize() {
+		return size;
+	}
+
+	/** @return win length of positions in this table */
+	public int getWinLength() {
+		return winLength;
+	}
+
+	/** @return number of positions in the table */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the value of a position for the player to move.
+	 * @param board a position with the same size and win length as the table
+	 * @return WIN, DRAW, or LOSS, or 0 if the position is not in the table
+	 */
+	public int value(Bitboard board) {
+		long entry = find(board);
+		return (int)entry & 0xFF;
+	}
+
+	/**
+	 * Get the best move in a position.
+	 * @param board a position with the same size and win length as the table
+	 * @return index of a cell on board, or -1 if the game is over or
+	 *     the position is not in the table
+	 */
+	public int bestMove(Bitboard board) {
+		checkSize(board);
+		long canonical = canonical(symmetry, board.getCellCount(),
+				board.mask(Player.X), board.mask(Player.O));
+		long entry = lookup(canonical >>> 3);
+		int move = ((int)(entry >>> 8) & 0xFF) - 1;
+		if (move < 0) return -1;
+		return symmetry.unmap((int)canonical & 7, move);
+	}
+
+	/**
+	 * Play the best move from the table.
+	 * @see tictactoe.engine.MoveStrategy#selectMove(Bitboard)
+	 */
+	@Override
+	public int selectMove(Bitboard board) {
+		return bestMove(board);
+	}
+
+	private void checkSize(Bitboard board) {
+		if (board.getSize() != size || board.getWinLength() != winLength)
+			throw new IllegalArgumentException("Tablebase is for "+size+"x"+size+" boards");
+	}
+
+	private long find(Bitboard board) {
+		checkSize(board);
+		long canonical = canonical(symmetry, board.getCellCount(),
+				board.mask(Player.X), board.mask(Player.O));
+		return lookup(canonical >>> 3);
+	}
+
+	/** @return the slot for a canonical key, or 0 if not found */
+	private long lookup(long key) {
+		int mask = (1 << capacityBits) - 1;
+		for(int index = slot(key, capacityBits); ; index = (index + 1) & mask) {
+			long entry = slots.get(index);
+			if (entry == 0 || (entry >>> 16) == key) return entry;
+		}
+	}
+
+	/** @return the first slot to try for a key in a table of 2^bits slots */
+	static int slot(long key, int bits) {
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> (64 - bits));
+	}
+
+	/** @return a slot value */
+	static long entry(long key, int move, int value) {
+		return key << 16 | (long)(move + 1) << 8 | value;
+	}
+
+	/**
+	 * Find the canonical form of a position: the smallest key of
+	 * the position under all 8 symmetries.
+	 * @param symmetry symmetries for the board size
+	 * @param cells number of cells on the board
+	 * @param x bitmask of X pieces
+	 * @param o bitmask of O pieces
+	 * @return canonical key &lt;&lt; 3 | number of the symmetry that makes it
+	 */
+	static long canonical(Symmetry symmetry, int cells, long x, long o) {
+		long best = Long.MAX_VALUE;
+		for(int s=0; s<Symmetry.COUNT; s++) {
+			long key = symmetry.apply(s, x) | symmetry.apply(s, o) << cells;
+			long candidate = key << 3 | s;
+			if (candidate < best) best = candidate;
+		}
+		return best;
+	}
+}
@@ -0,0 +1,171 @@
+package tictactoe.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import tictactoe.Player;
+
+/**
+ * Enumerate every reachable position on a small board, solve it,
+ * and write the results to a file that Tablebase can read.
+ *
+ * Every position is searched (no pruning), so every reachable
+ * position is in the table. Positions that are the same after
+ * a rotation or reflection are solved and stored only once.
+ * The table is built in the same open-addressing layout as the file,
+ * so writing it is a single copy.
+ *
+ * Usage: java tictactoe.engine.TablebaseGenerator size winLength file
+ */
+public class TablebaseGenerator {
+	private final int size;
+	private final int winLength;
+	private final int cells;
+	private final Symmetry symmetry;
+	private final Bitboard board;
+	/** Hash table of entries, in the same format as the file. */
+	private long[] slots;
+	private int capacityBits;
+	private int count;
+
+	/**
+	 * Create a generator for a board.
+	 * @param size number of rows and columns
+	 * @param winLength number of pieces in a line needed to win
+	 */
+	public TablebaseGenerator(int size, int winLength) {
+		if (size*size > Tablebase.MAX_CELLS)
+			throw new IllegalArgumentException("Tablebase boards can have at most "
+					+Tablebase.MAX_CELLS+" cells");
+		this.size = size;
+		this.winLength = winLength;
+		this.cells = size*size;
+		this.symmetry = new Symmetry(size);
+		this.board = new Bitboard(size, winLength);
+		this.capacityBits = 10;
+		this.slots = new long[1 << capacityBits];
+	}
+
+	/**
+	 * Solve all positions reachable from the empty board.
+	 * @return value of the empty board for X: Tablebase.WIN, DRAW, or LOSS
+	 */
+	public int generate() {
+		board.clear();
+		return solve();
+	}
+
+	/** @return number of positions found */
+	public int getCount() {
+		return count;
+	}
+
+	/** @return value of board for the player to move */
+	private int solve() {
+		long canonical = Tablebase.canonical(symmetry, cells,
+				board.mask(Player.X), board.mask(Player.O));
+		long key = canonical >>> 3;
+		long entry = find(key);
+		if (entry != 0) return (int)entry & 0xFF;
+
+		int value;
+		int bestMove = -1;
+		if (board.winner() != Player.NONE) value = Tablebase.LOSS; // opponent just won
+		else if (board.isFull()) value = Tablebase.DRAW;
+		else {
+			value = 0;
+			for(int cell=0; cell<cells; cell++) {
+				if (! board.isEmpty(cell)) continue;
+				board.play(cell);
+				// a win for the opponent is a loss for us
+				int mine = Tablebase.WIN + Tablebase.LOSS - solve();
+				board.undo(cell);
+				if (mine > value) {
+					value = mine;
+					bestMove = cell;
+				}
+			}
+			// store the move as it is in the canonical position
+			bestMove = symmetry.map((int)canonical & 7, bestMove);
+		}
+		insert(Tablebase.entry(key, bestMove, value));
+		return value;
+	}
+
+	/** @return entry for a key, or 0 if not in the table */
+	private long find(long key) {
+		int mask = slots.length - 1;
+		for(int index = Tablebase.slot(key, capacityBits); ; index = (index + 1) & mask) {
+			long entry = slots[index];
+			if (entry == 0 || (entry >>> 16) == key) return entry;
+		}
+	}
+
+	private void insert(long entry) {
+		if (2*(count + 1) > slots.length) grow();
+		put(slots, capacityBits, entry);
+		count++;
+	}
+
+	private static void put(long[] table, int bits, long entry) {
+		int mask = table.length - 1;
+		int index = Tablebase.slot(entry >>> 16, bits);
+		while (table[index] != 0) index = (index + 1) & mask;
+		table[index] = entry;
+	}
+
+	/** Double the size of the table. */
+	private void grow() {
+		long[] old = slots;
+		capacityBits++;
+		slots = new long[1 << capacityBits];
+		for(long entry : old) if (entry != 0) put(slots, capacityBits, entry);
+	}
+
+	/**
+	 * Write the table to a file.
+	 * @param file the file to write. It is replaced if it exists.
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_SIZE);
+			header.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION)
+				.putInt(size).putInt(winLength).putInt(slots.length).putInt(count);
+			header.clear();
+			while (header.hasRemaining()) channel.write(header);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+			for(int k=0; k<slots.length; k++) {
+				buffer.putLong(slots[k]);
+				if (! buffer.hasRemaining() || k == slots.length-1) {
+					buffer.flip();
+					while (buffer.hasRemaining()) channel.write(buffer);
+					buffer.clear();
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: java tictactoe.engine.TablebaseGenerator size winLength file");
+			System.exit(1);
+		}
+		int size = Integer.parseInt(args[0]);
+		int winLength = Integer.parseInt(args[1]);
+		Path file = Paths.get(args[2]);
+		TablebaseGenerator generator = new TablebaseGenerator(size, winLength);
+		long start = System.nanoTime();
+		int value = generator.generate();
+		generator.write(file);
+		String[] names = { "", "loss", "draw", "win" };
+		System.out.printf("%dx%d, %d in a row: %d positions, first player %s, %.1f sec\n",
+				size, size, winLength, generator.getCount(), names[value],
+				(System.nanoTime() - start) / 1.0E9);
+	}
+}
@@ -0,0 +1,150 @@
+package tictactoe.engine;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results, keyed by Zobrist hash.
+ * The memory used is set when the table is created and never grows.
+ *
+ * Each entry is two longs: a check word and a packed data word
+ * containing the score, search depth, bound type, best move, and
+ * the search generation that stored it.
+ *
+ * The table is divided into buckets of two entries.
+ * The first entry of a bucket keeps the deepest result (depth-preferred),
+ * but is replaced by any result from a newer search.
+ * The second entry is always replaced, so recent results are not lost.
+ *
+ * Several threads can share one table without locks.
+ * Each slot stores (hash XOR data) instead of the hash, so if two threads
+ * write the same slot at once and the key and data words come from
+ * different writes, the entry does not match any position and is
+ * treated as a miss (Hyatt's "lockless hashing").
+ */
+public class TranspositionTable {
+	/** Score is exact. */
+	public static final int EXACT = 0;
+	/** Score is a lower bound (search failed high). */
+	public static final int LOWER = 1;
+	/** Score is an upper bound (search failed low). */
+	public static final int UPPER = 2;
+	/** Returned by probe when there is no entry for a position. */
+	public static final long MISS = 0L;
+
+	/** Bit set in every stored entry, so an entry is never equal to MISS. */
+	private static final long VALID = 1L << 63;
+	/** Bytes used by one entry. */
+	private static final int ENTRY_SIZE = 16;
+
+	private final long[] keys;
+	private final long[] data;
+	/** Mask to get a bucket index from a hash. */
+	private final int mask;
+	/** Generation of the current search, 5 bits. */
+	private int generation;
+
+	/**
+	 * Create a table that uses at most a given amount of memory.
+	 * @param megabytes memory budget for the table
+	 */
+	public TranspositionTable(int megabytes) {
+		long bytes = Math.max(1, megabytes) * (1L << 20);
+		// largest power of 2 number of entries that fits the budget
+		long entries = Long.highestOneBit(bytes / ENTRY_SIZE);
+		entries = Math.min(entries, 1 << 30);
+		keys = new long[(int)entries];
+		data = new long[(int)entries];
+		mask = (int)(entries - 1) & ~1;
+	}
+
+	/** @return number of entries in the table */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Start a new search.
+	 * Entries from older searches become the first to be replaced.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & 0x1F;
+	}
+
+	/** Remove all entries. */
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(data, 0L);
+	}
+
+	/**
+	 * Look up a position.
+	 * @param hash Zobrist hash of the position
+	 * @return packed data for the position, or MISS if not found.
+	 *    Use the static methods score(), depth(), bound() and move() to unpack it.
+	 */
+	public long probe(long hash) {
+		int index = (int)hash & mask;
+		// read each word once, since other threads may be writing
+		long entry = data[index];
+		if (entry != MISS && (keys[index] ^ entry) == hash) return entry;
+		entry = data[index+1];
+		if (entry != MISS && (keys[index+1] ^ entry) == hash) return entry;
+		return MISS;
+	}
+
+	/**
+	 * Save the result of searching a position.
+	 * @param hash Zobrist hash of the position
+	 * @param score score of the position for the player to move
+	 * @param depth depth of the search below this position
+	 * @param bound EXACT, LOWER, or UPPER
+	 * @param move best move found, or -1 if none
+	 */
+	public void store(long hash, int score, int depth, int bound, int move) {
+		long entry = pack(score, depth, bound, move, generation);
+		int index = (int)hash & mask;
+		long old = data[index];
+		if (old == MISS || (keys[index] ^ old) == hash || generation(old) != generation
+				|| depth >= depth(old)) {
+			keys[index] = hash ^ entry;
+			data[index] = entry;
+		}
+		else {
+			keys[index+1] = hash ^ entry;
+			data[index+1] = entry;
+		}
+	}
+
+	private static long pack(int score, int depth, int bound, int move, int generation) {
+		return (score & 0xFFFFFFFFL)
+			| (long)(depth & 0xFF) << 32
+			| (long)(bound & 0x3) << 40
+			| (long)((move + 1) & 0xFFFF) << 42
+			| (long)(generation & 0x1F) << 58
+			| VALID;
+	}
+
+	/** @return the score in a packed entry */
+	public static int score(long entry) {
+		return (int)entry;
+	}
+
+	/** @return the search depth in a packed entry */
+	public static int depth(long entry) {
+		return (int)(entry >>> 32) & 0xFF;
+	}
+
+	/** @return the bound type (EXACT, LOWER, or UPPER) in a packed entry */
+	public static int bound(long entry) {
+		return (int)(entry >>> 40) & 0x3;
+	}
+
+	/** @return the best move in a packed entry, or -1 if none */
+	public static int move(long entry) {
+		return ((int)(entry >>> 42) & 0xFFFF) - 1;
+	}
+
+	private static int generation(long entry) {
+		return (int)(entry >>> 58) & 0x1F;
+	}
+}
@@ -0,0 +1,40 @@
+package tictactoe.engine;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of positions.
+ * There is one key for each (cell, player), so the hash of a position
+ * is the XOR of the keys of its pieces and can be updated in O(1)
+ * when a piece is added or removed.
+ *
+ * Keys are made from a fixed seed, so a cell has the same key on every
+ * board and in every run.
+ */
+final class Zobrist {
+	private static final long SEED = 0x5DEECE66DL;
+	private static long[] keys = new long[0];
+
+	private Zobrist() { }
+
+	/**
+	 * Get the keys for a board.
+	 * The key for cell c and player p (0 for X, 1 for O) is at index 2*c + p.
+	 * @param cells number of cells on the board
+	 * @return array with at least 2*cells keys. Do not modify it.
+	 */
+	static synchronized long[] keys(int cells) {
+		if (keys.length < 2*cells) {
+			SplittableRandom rand = new SplittableRandom(SEED);
+			long[] more = Arrays.copyOf(keys, 2*cells);
+			// generate the same sequence again so existing keys don't change
+			for(int k=0; k<more.length; k++) {
+				long key = rand.nextLong();
+				if (k >= keys.length) more[k] = key;
+			}
+			keys = more;
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,180 @@
+package tictactoe.record;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read games from a file written by GameRecordWriter.
+ *
+ * The file is memory-mapped and moves are decoded directly from the
+ * mapping into an int array that is reused for every game, so scanning
+ * a file does not copy it or create objects for each game.
+ *
+ * Usage:
+ * <pre>
+ * GameRecordReader reader = new GameRecordReader(file);
+ * while (reader.next()) {
+ *     for(int k=0; k &lt; reader.getMoveCount(); k++) ... reader.getMove(k) ...
+ * }
+ * </pre>
+ * If the last game in the file is incomplete, such as when the writer
+ * did not close the file, it is ignored.
+ */
+public class GameRecordReader {
+	private final ByteBuffer buffer;
+	/** Offset of the next game in the file. */
+	private int offset;
+	private int size;
+	private int winLength;
+	private int moveCount;
+	private int[] moves = new int[64];
+	/** Offset where a varint ended, set by getVarint. */
+	private int end;
+
+	/**
+	 * Open a game record file.
+	 * @param file a file written by GameRecordWriter
+	 * @throws IOException if the file cannot be read or is not a game record
+	 */
+	public GameRecordReader(Path file) throws IOException {
+		this(map(file), file);
+	}
+
+	/**
+	 * Read games from the contents of a file.
+	 * @param buffer the contents, from offset 0 to the limit
+	 * @param file name of the file, for error messages
+	 * @throws IOException if the contents are not a game record
+	 */
+	GameRecordReader(ByteBuffer buffer, Path file) throws IOException {
+		this.buffer = buffer;
+		if (buffer.limit() < GameRecordWriter.HEADER_SIZE || buffer.getInt(0) != GameRecordWriter.MAGIC)
+			throw new IOException(file+" is not a game record");
+		if (buffer.getInt(4) != GameRecordWriter.VERSION)
+			throw new IOException(file+" has unsupported version "+buffer.getInt(4));
+		offset = GameRecordWriter.HEADER_SIZE;
+	}
+
+	private static ByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException(file+" is too large to map");
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/** @return offset in the file after the last game that was read */
+	int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Read the next game.
+	 * @return true if a game was read, false at the end of the file
+	 */
+	public boolean next() {
+		int pos = offset;
+		int newSize = getVarint(pos);
+		if (newSize < 0) return false;
+		int newWinLength = getVarint(end);
+		if (newWinLength < 0) return false;
+		int count = getVarint(end);
+		if (count < 0) return false;
+		if (count > moves.length) moves = new int[Math.max(count, 2*moves.length)];
+		for(int k=0; k<count; k++) {
+			int move = getVarint(end);
+			if (move < 0) return false;
+			moves[k] = move;
+		}
+		size = newSize;
+		winLength = newWinLength;
+		moveCount = count;
+		offset = end;
+		return true;
+	}
+
+	/**
+	 * Decode a varint.
+	 * @param pos offset of the first byte
+	 * @return the value, or -1 if the file ends before the varint. Sets end.
+	 */
+	private int getVarint(int pos) {
+		int value = 0;
+		int limit = buffer.limit();
+		for(int shift = 0; pos < limit && shift < 32; shift += 7) {
+			byte b = buffer.get(pos++);
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				end = pos;
+				return value;
+			}
+		}
+		return -1;
+	}
+
+	/** Go back to the first game. */
+	public void rewind() {
+		offset = GameRecordWriter.HEADER_SIZE;
+	}
+
+	/** @return board size of the current game */
+	public int getSize() {
+		return size;
+	}
+
+	/** @return win length of the current game */
+	public int getWinLength() {
+		return winLength;
+	}
+
+	/** @return number of moves in the current game */
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * Get a move of the current game.
+	 * @param k number of the move, starting at 0
+	 * @return cell index of the move
+	 */
+	public int getMove(int k) {
+		if (k < 0 || k >= moveCount) throw new IndexOutOfBoundsException("No move "+k);
+		return moves[k];
+	}
+
+	/**
+	 * Create a replay of the current game.
+	 * @return a replay with a copy of the moves
+	 */
+	public Replay toReplay() {
+		return new Replay(size, winLength, moves, moveCount);
+	}
+
+	/**
+	 * Count the games and moves in a file.
+	 * Usage: java tictactoe.record.GameRecordReader file
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java tictactoe.record.GameRecordReader file");
+			System.exit(1);
+		}
+		Path file = Paths.get(args[0]);
+		long start = System.nanoTime();
+		GameRecordReader reader = new GameRecordReader(file);
+		long games = 0;
+		long moves = 0;
+		while (reader.next()) {
+			games++;
+			moves += reader.getMoveCount();
+		}
+		double seconds = (System.nanoTime() - start) / 1.0E9;
+		System.out.printf("%d games, %d moves, %d bytes in %.3f sec (%.0f MB/sec)\n",
+				games, moves, reader.buffer.limit(), seconds, reader.buffer.limit() / seconds / 1.0E6);
+	}
+}
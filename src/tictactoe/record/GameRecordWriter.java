@@ -0,0 +1,174 @@
+package tictactoe.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+import tictactoe.engine.Position;
+
+/**
+ * Append games to a binary game record file.
+ *
+ * File format:
+ * <pre>
+ *   int magic, int version,
+ *   then for each game: varint size, varint winLength, varint moveCount,
+ *   and one varint cell index for each move
+ * </pre>
+ * Varints are unsigned LEB128: 7 bits per byte, low bits first,
+ * with the high bit set on every byte except the last.
+ * On a board up to 11x11 each move is one byte.
+ *
+ * Games are collected in a direct buffer and written to the file
+ * channel when the buffer is full, on flush(), and on close().
+ * Games are only appended, so a file can be written by several runs.
+ * If a run stopped while writing a game, that incomplete game is removed
+ * when the file is opened again, so the games appended after it can be read.
+ * The write methods are synchronized, so threads can share a writer.
+ */
+public class GameRecordWriter implements Closeable {
+	static final int MAGIC = 0x54544752; // "TTGR"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+	/** Largest size of a varint for an int. */
+	static final int MAX_VARINT = 5;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private long games;
+
+	/**
+	 * Open a file for appending games, with a 64KB buffer.
+	 * @param file the file. It is created if it does not exist.
+	 * @throws IOException if the file cannot be opened or is not a game record
+	 */
+	public GameRecordWriter(Path file) throws IOException {
+		this(file, 1 << 16);
+	}
+
+	/**
+	 * Open a file for appending games.
+	 * @param file the file. It is created if it does not exist.
+	 * @param bufferSize number of bytes to collect before writing to the file
+	 * @throws IOException if the file cannot be opened or is not a game record
+	 */
+	public GameRecordWriter(Path file, int bufferSize) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 64));
+		try {
+			if (channel.size() == 0) {
+				buffer.putInt(MAGIC).putInt(VERSION);
+				writeBuffer();
+			}
+			else removeIncompleteGame(file);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Check the header of an existing file, and cut off the file after
+	 * the last complete game.
+	 * The file is read into the heap instead of mapped, since a mapped
+	 * file cannot be truncated on some platforms.
+	 */
+	private void removeIncompleteGame(Path file) throws IOException {
+		long length = channel.size();
+		if (length > Integer.MAX_VALUE) throw new IOException(file+" is too large to check");
+		ByteBuffer contents = ByteBuffer.allocate((int) length);
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (contents.hasRemaining() && in.read(contents, contents.position()) > 0);
+		}
+		contents.flip();
+		GameRecordReader reader = new GameRecordReader(contents, file);
+		while (reader.next());
+		if (reader.getOffset() < length) {
+			Logger.getLogger("GameRecordWriter").warning(String.format(
+					"Removing %d bytes of an incomplete game at the end of %s", length - reader.getOffset(), file));
+			channel.truncate(reader.getOffset());
+		}
+	}
+
+	/**
+	 * Append a game.
+	 * @param size number of rows and columns on the board
+	 * @param winLength number of pieces in a line needed to win
+	 * @param moves cell index of each move, in the order played
+	 * @param count number of moves
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public synchronized void write(int size, int winLength, int[] moves, int count) throws IOException {
+		int maxBytes = (3 + count) * MAX_VARINT;
+		if (buffer.remaining() < maxBytes) writeBuffer();
+		// a game larger than the buffer is written in pieces
+		putVarint(size);
+		putVarint(winLength);
+		putVarint(count);
+		for(int k=0; k<count; k++) {
+			if (buffer.remaining() < MAX_VARINT) writeBuffer();
+			putVarint(moves[k]);
+		}
+		games++;
+	}
+
+	/**
+	 * Append the game that led to a position.
+	 * @param position the last position of the game
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void write(Position position) throws IOException {
+		int count = position.getMoveCount();
+		int[] moves = new int[count];
+		for(Position p = position; p.getParent() != null; p = p.getParent()) {
+			moves[--count] = p.getLastMove();
+		}
+		write(position.getSize(), position.getWinLength(), moves, moves.length);
+	}
+
+	private void putVarint(int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	/** @return number of games written by this writer */
+	public synchronized long getGameCount() {
+		return games;
+	}
+
+	/**
+	 * Write all buffered games to the file.
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		writeBuffer();
+	}
+
+	/**
+	 * Write all buffered games and close the file.
+	 * @throws IOException if the file cannot be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (! channel.isOpen()) return;
+		try {
+			writeBuffer();
+		} finally {
+			channel.close();
+		}
+	}
+}
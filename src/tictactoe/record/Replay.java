@@ -0,0 +1,103 @@
+package tictactoe.record;
+
+import java.util.Arrays;
+
+import tictactoe.TicTacToeGame;
+import tictactoe.engine.Position;
+
+/**
+ * Replay a recorded game, and go to any move of it.
+ *
+ * The positions after every SNAPSHOT_INTERVAL moves are saved when the
+ * replay is created, so seek(n) plays at most SNAPSHOT_INTERVAL-1 moves
+ * from the nearest snapshot instead of replaying the game from the start.
+ * Positions are immutable, so a snapshot can be shared by any
+ * number of seeks.
+ */
+public class Replay {
+	/** Number of moves between saved positions. */
+	public static final int SNAPSHOT_INTERVAL = 16;
+
+	private final int size;
+	private final int winLength;
+	private final int[] moves;
+	/** Position after k*SNAPSHOT_INTERVAL moves. */
+	private final Position[] snapshots;
+
+	/**
+	 * Create a replay of a game.
+	 * @param size number of rows and columns on the board
+	 * @param winLength number of pieces in a line needed to win
+	 * @param moves cell index of each move, in the order played
+	 * @param count number of moves
+	 * @throws IllegalArgumentException if a move is not legal
+	 */
+	public Replay(int size, int winLength, int[] moves, int count) {
+		this.size = size;
+		this.winLength = winLength;
+		this.moves = Arrays.copyOf(moves, count);
+		snapshots = new Position[count / SNAPSHOT_INTERVAL + 1];
+		Position position = new Position(size, winLength);
+		snapshots[0] = position;
+		for(int k=0; k<count; k++) {
+			position = position.play(moves[k]);
+			if ((k+1) % SNAPSHOT_INTERVAL == 0) snapshots[(k+1) / SNAPSHOT_INTERVAL] = position;
+		}
+	}
+
+	/** @return number of moves in the game */
+	public int getMoveCount() {
+		return moves.length;
+	}
+
+	/**
+	 * Get a move of the game.
+	 * @param k number of the move, starting at 0
+	 * @return cell index of the move
+	 */
+	public int getMove(int k) {
+		return moves[k];
+	}
+
+	/**
+	 * Get the position after some moves.
+	 * @param n number of moves, from 0 to getMoveCount()
+	 * @return the position after n moves
+	 */
+	public Position seek(int n) {
+		if (n < 0 || n > moves.length) throw new IndexOutOfBoundsException("No move "+n);
+		Position position = snapshots[n / SNAPSHOT_INTERVAL];
+		for(int k = position.getMoveCount(); k < n; k++) position = position.play(moves[k]);
+		return position;
+	}
+
+	/**
+	 * Show the game up to some move in a TicTacToeGame.
+	 * If the game is already showing an earlier part of this replay,
+	 * only the moves after that are played.
+	 * The game's recorder is not used, since the game was already recorded.
+	 * @param game a game with the same board size and win length
+	 * @param n number of moves, from 0 to getMoveCount()
+	 * @throws IllegalArgumentException if the game is for a different board
+	 */
+	public void applyTo(TicTacToeGame game, int n) {
+		if (n < 0 || n > moves.length) throw new IndexOutOfBoundsException("No move "+n);
+		if (game.getPieces().getSize() != size || game.getWinLength() != winLength)
+			throw new IllegalArgumentException("Replay is for a different board");
+		Position current = game.getPosition();
+		int start = current.getMoveCount();
+		if (start > n || current.getHash() != seek(start).getHash()) {
+			game.startNewGame();
+			start = 0;
+		}
+		GameRecordWriter recorder = game.getRecorder();
+		game.setRecorder(null);
+		try {
+			for(int k = start; k < n; k++) {
+				game.moveTo(game.getNextPlayer(), moves[k] % size, moves[k] / size);
+			}
+		} finally {
+			game.setRecorder(recorder);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package tictactoe.sim;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tictactoe.Player;
+import tictactoe.engine.Bitboard;
+import tictactoe.engine.MoveStrategy;
+import tictactoe.engine.Strategies;
+import tictactoe.record.GameRecordWriter;
+
+/**
+ * Play many games between two computer players without a UI.
+ * This uses only tictactoe.engine, so it runs on a machine with no display
+ * and never loads JavaFX.
+ *
+ * Usage:
+ * <pre>
+ * java tictactoe.sim.SelfPlay [-games n] [-size n] [-win k] [-threads n] [-x strategy] [-o strategy]
+ *     [-record file]
+ * </pre>
+ * Strategies are created by tictactoe.engine.Strategies.
+ * Each thread has its own players and board, and threads only share
+ * a counter of games to play.
+ * At the end it prints games/second, the win/draw distribution,
+ * and the average game length.
+ * With -record, every game is appended to a game record file
+ * that can be read with tictactoe.record.GameRecordReader.
+ */
+public class SelfPlay {
+	private int games = 10000;
+	private int size = 3;
+	/** Number in a row to win. 0 means the board size, up to 5. */
+	private int winLength = 0;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private String xStrategy = "random";
+	private String oStrategy = "random";
+	/** File to record games in, or null. */
+	private String recordFile = null;
+	private GameRecordWriter recorder;
+
+	/** Results of the games played by one thread. */
+	static class Results {
+		long xWins;
+		long oWins;
+		long draws;
+		long moves;
+
+		long games() {
+			return xWins + oWins + draws;
+		}
+
+		void add(Results other) {
+			xWins += other.xWins;
+			oWins += other.oWins;
+			draws += other.draws;
+			moves += other.moves;
+		}
+	}
+
+	/**
+	 * Play one game to the end.
+	 * @param board the board to play on. It is cleared first.
+	 * @param x player for X
+	 * @param o player for O
+	 * @return the winner, or Player.NONE for a draw
+	 */
+	public static Player playGame(Bitboard board, MoveStrategy x, MoveStrategy o) {
+		return playGame(board, x, o, null);
+	}
+
+	/**
+	 * Play one game to the end and save the moves.
+	 * @param board the board to play on. It is cleared first.
+	 * @param x player for X
+	 * @param o player for O
+	 * @param moves array to save the moves in, with length at least the number
+	 *     of cells, or null to not save moves
+	 * @return the winner, or Player.NONE for a draw
+	 */
+	public static Player playGame(Bitboard board, MoveStrategy x, MoveStrategy o, int[] moves) {
+		board.clear();
+		while (! board.isGameOver()) {
+			MoveStrategy player = (board.nextPlayer() == Player.X) ? x : o;
+			int cell = player.selectMove(board);
+			if (moves != null) moves[board.getMoveCount()] = cell;
+			board.play(cell);
+		}
+		return board.winner();
+	}
+
+	/** Play all the games, using several threads. */
+	Results run() throws InterruptedException, IOException {
+		if (recordFile != null) recorder = new GameRecordWriter(Paths.get(recordFile));
+		AtomicLong gamesLeft = new AtomicLong(games);
+		List<Thread> workers = new ArrayList<>();
+		List<Results> results = new ArrayList<>();
+		for(int t=0; t<threads; t++) {
+			Results result = new Results();
+			results.add(result);
+			long seed = 1000L * t;
+			Thread thread = new Thread(() -> play(gamesLeft, result, seed), "selfplay-"+t);
+			workers.add(thread);
+			thread.start();
+		}
+		Results total = new Results();
+		for(int t=0; t<threads; t++) {
+			workers.get(t).join();
+			total.add(results.get(t));
+		}
+		if (recorder != null) recorder.close();
+		return total;
+	}
+
+	/** Play games until no more are left. Runs in a worker thread. */
+	private void play(AtomicLong gamesLeft, Results result, long seed) {
+		MoveStrategy x = Strategies.create(xStrategy, seed);
+		MoveStrategy o = Strategies.create(oStrategy, seed+1);
+		Bitboard board = new Bitboard(size, winLength);
+		int[] moves = (recorder == null) ? null : new int[board.getCellCount()];
+		while (gamesLeft.getAndDecrement() > 0) {
+			Player winner = playGame(board, x, o, moves);
+			if (moves != null) record(moves, board.getMoveCount());
+			if (winner == Player.X) result.xWins++;
+			else if (winner == Player.O) result.oWins++;
+			else result.draws++;
+			result.moves += board.getMoveCount();
+		}
+	}
+
+	private void record(int[] moves, int count) {
+		try {
+			recorder.write(size, winLength, moves, count);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot record game", e);
+		}
+	}
+
+	/** Set options from command line arguments. */
+	private void parseArgs(String[] args) {
+		for(int k=0; k<args.length; k++) {
+			String arg = args[k];
+			if (k+1 >= args.length) usage("Missing value for "+arg);
+			String value = args[++k];
+			switch (arg) {
+			case "-games": games = Integer.parseInt(value); break;
+			case "-size": size = Integer.parseInt(value); break;
+			case "-win": winLength = Integer.parseInt(value); break;
+			case "-threads": threads = Integer.parseInt(value); break;
+			case "-x": xStrategy = value; break;
+			case "-o": oStrategy = value; break;
+			case "-record": recordFile = value; break;
+			default: usage("Unknown option "+arg);
+			}
+		}
+		if (winLength == 0) winLength = Math.min(size, 5);
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: java tictactoe.sim.SelfPlay [-games n] [-size n] [-win k]"
+				+ " [-threads n] [-x strategy] [-o strategy] [-record file]");
+		System.err.println("Strategies: "+Strategies.NAMES);
+		System.exit(1);
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		SelfPlay selfPlay = new SelfPlay();
+		try {
+			selfPlay.parseArgs(args);
+			// check the options before starting threads
+			new Bitboard(selfPlay.size, selfPlay.winLength);
+			Strategies.create(selfPlay.xStrategy, 0);
+			Strategies.create(selfPlay.oStrategy, 0);
+		} catch (IllegalArgumentException e) {
+			usage(e.getMessage());
+		}
+		System.out.printf("%d games on %dx%d board, %d in a row, X=%s O=%s, %d threads\n",
+				selfPlay.games, selfPlay.size, selfPlay.size, selfPlay.winLength,
+				selfPlay.xStrategy, selfPlay.oStrategy, selfPlay.threads);
+		long start = System.nanoTime();
+		Results results = selfPlay.run();
+		double seconds = (System.nanoTime() - start) / 1.0E9;
+		long n = Math.max(1, results.games());
+		System.out.printf("%d games in %.2f sec, %.0f games/sec\n", results.games(), seconds,
+				results.games() / seconds);
+		System.out.printf("X wins %.1f%%  O wins %.1f%%  draws %.1f%%\n",
+				100.0*results.xWins/n, 100.0*results.oWins/n, 100.0*results.draws/n);
+		System.out.printf("average game length %.2f moves\n", (double)results.moves/n);
+	}
+}
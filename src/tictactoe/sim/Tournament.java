@@ -0,0 +1,484 @@
+package tictactoe.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tictactoe.Player;
+import tictactoe.engine.Bitboard;
+import tictactoe.engine.MoveStrategy;
+import tictactoe.engine.Strategies;
+
+/**
+ * Play a tournament between computer players and estimate their Elo ratings.
+ * Like SelfPlay, this uses only tictactoe.engine and runs without a display.
+ *
+ * Usage:
+ * <pre>
+ * java tictactoe.sim.Tournament -players p1,p2,... [-mode roundrobin|gauntlet]
+ *     [-boards 3,4x3,7x4] [-games n] [-opening n] [-threads n] [-sprt elo0,elo1] [-seed n]
+ * </pre>
+ * Players are created by tictactoe.engine.Strategies.
+ * In a round robin every player plays every other player. In a gauntlet
+ * the first player plays each of the others, e.g. a new version against
+ * the old ones.
+ * A board is given as size or size x win length, e.g. 7x4 for a 7x7 board
+ * with 4 in a row. Each pairing plays -games games on each board.
+ *
+ * Games are played in pairs with the colours swapped, after the same random
+ * opening of -opening moves. So each player has the first move equally often,
+ * and deterministic players do not play the same game again and again.
+ * Pairs of games are run in parallel by -threads threads. Each thread has its
+ * own players and board, and threads only share a counter of the next pair
+ * to play and the results of each pairing.
+ *
+ * At the end it prints the score and Elo difference of each pairing with a
+ * 95% confidence interval, and a rating for each player.
+ *
+ * With -sprt elo0,elo1 each pairing stops as soon as a sequential probability
+ * ratio test decides between H0: the first player is elo0 stronger, and
+ * H1: the first player is elo1 stronger (alpha = beta = 0.05).
+ * -games is then the most games to play.
+ * The test is a generalized SPRT on pairs of games, since the two games of
+ * a pair share an opening and are not independent. A pair scores 0, 0.5, 1,
+ * 1.5 or 2 points, and under each hypothesis the probabilities of these
+ * five results are fitted by maximum likelihood, constrained to the
+ * hypothesis' expected score.
+ */
+public class Tournament {
+	/** z for a 95% confidence interval. */
+	private static final double Z95 = 1.96;
+	/** Error rates for the SPRT. */
+	private static final double ALPHA = 0.05;
+	private static final double BETA = 0.05;
+	/** Pairs of games to play before the SPRT may decide. */
+	private static final int MIN_SPRT_PAIRS = 10;
+	/** Count added to each result of a pair for the SPRT, so a result not seen yet is not impossible. */
+	private static final double SPRT_PRIOR = 0.5;
+
+	private List<String> players = new ArrayList<>();
+	private boolean gauntlet = false;
+	private List<int[]> boards = new ArrayList<>();
+	private int games = 100;
+	/** Random moves at the start of each pair of games. */
+	private int opening = 2;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/** SPRT hypotheses, or NaN for no SPRT. */
+	private double elo0 = Double.NaN;
+	private double elo1 = Double.NaN;
+	private long seed = 1;
+
+	/** Results of the games between two players. first is the player listed first. */
+	static class Pairing {
+		final int first;
+		final int second;
+		long wins;
+		long draws;
+		long losses;
+		/** Number of pairs of games by points of the first player: 0, 0.5, 1, 1.5, 2. */
+		final long[] pairs = new long[5];
+		/** Set when the SPRT has decided: 1 for H1, -1 for H0. */
+		volatile int decision;
+		double llr;
+
+		Pairing(int first, int second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		long games() {
+			return wins + draws + losses;
+		}
+
+		/** @return fraction of points the first player scored */
+		double score() {
+			return (wins + 0.5*draws) / games();
+		}
+
+		/**
+		 * Add the results of a pair of games for the first player:
+		 * 1 win, 0.5 draw, 0 loss.
+		 */
+		synchronized void add(double first, double second, Tournament tournament) {
+			for(double result : new double[] {first, second}) {
+				if (result == 1.0) wins++;
+				else if (result == 0.0) losses++;
+				else draws++;
+			}
+			pairs[(int) Math.round(2*(first + second))]++;
+			if (! Double.isNaN(tournament.elo0) && decision == 0) {
+				llr = logLikelihoodRatio(pairs, tournament.elo0, tournament.elo1);
+				if (games() < 2*MIN_SPRT_PAIRS) return;
+				if (llr >= Math.log((1-BETA)/ALPHA)) decision = 1;
+				else if (llr <= Math.log(BETA/(1-ALPHA))) decision = -1;
+			}
+		}
+	}
+
+	/** A pair of games to play: a pairing on a board after an opening. */
+	static class Match {
+		final Pairing pairing;
+		final int[] board;
+		final long seed;
+
+		Match(Pairing pairing, int[] board, long seed) {
+			this.pairing = pairing;
+			this.board = board;
+			this.seed = seed;
+		}
+	}
+
+	/**
+	 * Elo difference that gives an expected score.
+	 * @param score expected score of a player, from 0 to 1
+	 * @return how much stronger the player is, in Elo
+	 */
+	static double elo(double score) {
+		return -400.0 * Math.log10(1.0/score - 1.0);
+	}
+
+	/** @return expected score of a player who is elo stronger than the opponent */
+	static double expectedScore(double elo) {
+		return 1.0 / (1.0 + Math.pow(10.0, -elo/400.0));
+	}
+
+	/**
+	 * Variance of one game's result, from the wins, draws and losses.
+	 * Returns 0 when all results are the same.
+	 */
+	static double variance(long wins, long draws, long losses) {
+		long n = wins + draws + losses;
+		double s = (wins + 0.5*draws) / n;
+		return (wins*(1-s)*(1-s) + draws*(0.5-s)*(0.5-s) + losses*s*s) / n;
+	}
+
+	/**
+	 * Log of the generalized likelihood ratio of H1: elo1 to H0: elo0,
+	 * from the results of pairs of games.
+	 * SPRT_PRIOR is added to each count first.
+	 * @param pairs number of pairs where the first player scored 0, 0.5, 1, 1.5 and 2 points
+	 * @return the LLR. Large positive favours H1, large negative favours H0.
+	 */
+	static double logLikelihoodRatio(long[] pairs, double elo0, double elo1) {
+		double n = 0;
+		for(long count : pairs) n += count + SPRT_PRIOR;
+		double[] frequency = new double[pairs.length];
+		for(int j=0; j<pairs.length; j++) frequency[j] = (pairs[j] + SPRT_PRIOR) / n;
+		double s0 = expectedScore(elo0);
+		double s1 = expectedScore(elo1);
+		double lambda0 = lagrangeMultiplier(frequency, s0);
+		double lambda1 = lagrangeMultiplier(frequency, s1);
+		// the fitted probability of result j is frequency[j] / (1 + lambda*(score(j) - s))
+		double llr = 0;
+		for(int j=0; j<pairs.length; j++) {
+			double score = j / (pairs.length - 1.0);
+			llr += (pairs[j] + SPRT_PRIOR) * (Math.log(1 + lambda0*(score - s0)) - Math.log(1 + lambda1*(score - s1)));
+		}
+		return llr;
+	}
+
+	/**
+	 * Find the multiplier of the maximum likelihood probabilities
+	 * p[j] = frequency[j] / (1 + lambda*(score(j) - s)), whose expected score is s.
+	 * The expected score decreases as lambda grows, so bisection finds it.
+	 * @param frequency observed frequency of each result, all positive
+	 * @param s expected score per game, from 0 to 1
+	 */
+	private static double lagrangeMultiplier(double[] frequency, double s) {
+		// every 1 + lambda*(score - s) must be positive, for scores from 0 to 1
+		double low = -1 / (1 - s);
+		double high = 1 / s;
+		for(int iteration=0; iteration<100; iteration++) {
+			double lambda = (low + high) / 2;
+			double sum = 0;
+			for(int j=0; j<frequency.length; j++) {
+				double d = j / (frequency.length - 1.0) - s;
+				sum += frequency[j] * d / (1 + lambda*d);
+			}
+			if (sum > 0) low = lambda;
+			else high = lambda;
+		}
+		return (low + high) / 2;
+	}
+
+	/**
+	 * Play one game after an opening.
+	 * @param board the board to play on. It is cleared first.
+	 * @param opening the first moves
+	 * @param x player for X
+	 * @param o player for O
+	 * @return the winner, or Player.NONE for a draw
+	 */
+	public static Player playGame(Bitboard board, int[] opening, MoveStrategy x, MoveStrategy o) {
+		board.clear();
+		for(int cell : opening) board.play(cell);
+		while (! board.isGameOver()) {
+			MoveStrategy player = (board.nextPlayer() == Player.X) ? x : o;
+			board.play(player.selectMove(board));
+		}
+		return board.winner();
+	}
+
+	/**
+	 * Make a random opening that does not end the game.
+	 * @return the moves of the opening
+	 */
+	static int[] makeOpening(Bitboard board, int length, long seed) {
+		Random random = new Random(seed);
+		board.clear();
+		int[] moves = new int[Math.min(length, board.getCellCount())];
+		for(int k=0; k<moves.length; k++) {
+			int cell;
+			do cell = random.nextInt(board.getCellCount()); while (! board.isEmpty(cell));
+			board.play(cell);
+			if (board.isGameOver()) return Arrays.copyOf(moves, k);
+			moves[k] = cell;
+		}
+		return moves;
+	}
+
+	/** Make the pairings: every pair of players, or the first player against each other. */
+	List<Pairing> makePairings() {
+		List<Pairing> pairings = new ArrayList<>();
+		for(int a=0; a<players.size(); a++) {
+			for(int b=a+1; b<players.size(); b++) {
+				if (gauntlet && a > 0) break;
+				pairings.add(new Pairing(a, b));
+			}
+		}
+		return pairings;
+	}
+
+	/**
+	 * Play all the matches, using several threads.
+	 * Matches are in rounds, so when the SPRT stops early every pairing
+	 * has played about the same number of games on each board.
+	 */
+	List<Pairing> run() throws InterruptedException {
+		List<Pairing> pairings = makePairings();
+		List<Match> matches = new ArrayList<>();
+		int rounds = (games + 1) / 2;
+		for(int round=0; round<rounds; round++) {
+			for(int[] board : boards) {
+				for(Pairing pairing : pairings) {
+					matches.add(new Match(pairing, board, seed + 7919L*matches.size()));
+				}
+			}
+		}
+		AtomicInteger next = new AtomicInteger();
+		List<Thread> workers = new ArrayList<>();
+		for(int t=0; t<threads; t++) {
+			long threadSeed = seed + 1000L * t;
+			Thread thread = new Thread(() -> play(matches, next, threadSeed), "tournament-"+t);
+			workers.add(thread);
+			thread.start();
+		}
+		for(Thread thread : workers) thread.join();
+		return pairings;
+	}
+
+	/** Play matches until none are left. Runs in a worker thread. */
+	private void play(List<Match> matches, AtomicInteger next, long threadSeed) {
+		// each thread has its own players, one for each board size
+		Map<String,MoveStrategy> strategies = new HashMap<>();
+		Map<String,Bitboard> boardsBySize = new HashMap<>();
+		int index;
+		while ((index = next.getAndIncrement()) < matches.size()) {
+			Match match = matches.get(index);
+			Pairing pairing = match.pairing;
+			if (pairing.decision != 0) continue; // SPRT has decided
+			String boardKey = match.board[0] + "x" + match.board[1];
+			Bitboard board = boardsBySize.computeIfAbsent(boardKey,
+					(key) -> new Bitboard(match.board[0], match.board[1]));
+			MoveStrategy first = strategies.computeIfAbsent(pairing.first + "@" + boardKey,
+					(key) -> Strategies.create(players.get(pairing.first), threadSeed + key.hashCode()));
+			MoveStrategy second = strategies.computeIfAbsent(pairing.second + "@" + boardKey,
+					(key) -> Strategies.create(players.get(pairing.second), threadSeed + key.hashCode()));
+			int[] moves = makeOpening(board, opening, match.seed);
+			// the same opening with each player as X
+			Player winner = playGame(board, moves, first, second);
+			double asX = result(winner, Player.X);
+			winner = playGame(board, moves, second, first);
+			pairing.add(asX, result(winner, Player.O), this);
+		}
+	}
+
+	/** @return result of a game for one side: 1 win, 0.5 draw, 0 loss */
+	private static double result(Player winner, Player side) {
+		if (winner == Player.NONE) return 0.5;
+		return (winner == side) ? 1.0 : 0.0;
+	}
+
+	/**
+	 * Compute a rating for each player from all the results, with the
+	 * Bradley-Terry model (the model behind Elo) fitted by maximum likelihood.
+	 * A draw counts as half a win for each player.
+	 * The ratings are scaled so the first player has rating 0.
+	 * @return ratings in Elo
+	 */
+	double[] ratings(List<Pairing> pairings) {
+		int n = players.size();
+		double[] strength = new double[n];
+		Arrays.fill(strength, 1.0);
+		double[] points = new double[n];
+		for(Pairing p : pairings) {
+			points[p.first] += p.wins + 0.5*p.draws;
+			points[p.second] += p.losses + 0.5*p.draws;
+		}
+		// minorization-maximization iterations; converges for connected results
+		for(int iteration=0; iteration<1000; iteration++) {
+			double[] updated = new double[n];
+			for(int i=0; i<n; i++) {
+				double sum = 0;
+				for(Pairing p : pairings) {
+					if (p.first == i) sum += p.games() / (strength[i] + strength[p.second]);
+					else if (p.second == i) sum += p.games() / (strength[i] + strength[p.first]);
+				}
+				// a small prior keeps players who won or lost every game finite
+				updated[i] = (points[i] + 0.5) / (sum + 1.0 / (strength[i] + 1.0));
+			}
+			strength = updated;
+		}
+		double[] ratings = new double[n];
+		for(int i=0; i<n; i++) ratings[i] = 400.0 * Math.log10(strength[i] / strength[0]);
+		return ratings;
+	}
+
+	/**
+	 * Approximate 95% confidence interval for each rating, from the
+	 * Fisher information of the player's games with the other ratings fixed.
+	 * @return half width of the interval, in Elo
+	 */
+	static double[] ratingErrors(List<Pairing> pairings, double[] ratings) {
+		double[] information = new double[ratings.length];
+		for(Pairing p : pairings) {
+			double e = expectedScore(ratings[p.first] - ratings[p.second]);
+			double info = p.games() * e * (1-e);
+			information[p.first] += info;
+			information[p.second] += info;
+		}
+		double[] errors = new double[ratings.length];
+		for(int i=0; i<errors.length; i++) {
+			errors[i] = (information[i] == 0) ? Double.POSITIVE_INFINITY
+					: Z95 * 400.0 / Math.log(10.0) / Math.sqrt(information[i]);
+		}
+		return errors;
+	}
+
+	/** Print the results of each pairing and the rating of each player. */
+	void report(List<Pairing> pairings) {
+		System.out.printf("%-30s %7s %6s %6s %6s %7s %22s%s\n", "Pairing", "Games", "W", "D", "L",
+				"Score", "Elo (95% CI)", Double.isNaN(elo0) ? "" : "  SPRT");
+		for(Pairing p : pairings) {
+			if (p.games() == 0) continue;
+			double s = p.score();
+			// interval of the score, then converted to Elo
+			double error = Z95 * Math.sqrt(variance(p.wins, p.draws, p.losses) / p.games());
+			String interval = formatElo(elo(s)) + " [" + formatElo(elo(Math.max(0, s - error)))
+					+ "," + formatElo(elo(Math.min(1, s + error))) + "]";
+			String sprt = "";
+			if (! Double.isNaN(elo0)) {
+				String decision = (p.decision > 0) ? "H1 accepted" : (p.decision < 0) ? "H0 accepted" : "undecided";
+				sprt = String.format("  %s (LLR %.2f)", decision, p.llr);
+			}
+			System.out.printf("%-30s %7d %6d %6d %6d %6.1f%% %22s%s\n",
+					players.get(p.first) + " - " + players.get(p.second),
+					p.games(), p.wins, p.draws, p.losses, 100*s, interval, sprt);
+		}
+		double[] ratings = ratings(pairings);
+		double[] errors = ratingErrors(pairings, ratings);
+		Integer[] order = new Integer[players.size()];
+		for(int i=0; i<order.length; i++) order[i] = i;
+		Arrays.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+		System.out.printf("\n%-20s %8s %8s\n", "Player", "Elo", "95% CI");
+		for(int i : order) {
+			System.out.printf("%-20s %+8.0f %8s\n", players.get(i), ratings[i],
+					Double.isInfinite(errors[i]) ? "-" : String.format("+-%.0f", errors[i]));
+		}
+	}
+
+	/** Format an Elo difference. It is infinite when one player scored every point. */
+	private static String formatElo(double elo) {
+		if (Double.isInfinite(elo)) return (elo > 0) ? "+inf" : "-inf";
+		return String.format("%+.0f", elo);
+	}
+
+	/** Set options from command line arguments. */
+	private void parseArgs(String[] args) {
+		for(int k=0; k<args.length; k++) {
+			String arg = args[k];
+			if (k+1 >= args.length) usage("Missing value for "+arg);
+			String value = args[++k];
+			switch (arg) {
+			case "-players": players = Arrays.asList(value.split(",")); break;
+			case "-mode":
+				if (value.equals("gauntlet")) gauntlet = true;
+				else if (value.equals("roundrobin")) gauntlet = false;
+				else usage("Unknown mode "+value);
+				break;
+			case "-boards":
+				boards.clear();
+				for(String board : value.split(",")) boards.add(parseBoard(board));
+				break;
+			case "-games": games = Integer.parseInt(value); break;
+			case "-opening": opening = Integer.parseInt(value); break;
+			case "-threads": threads = Integer.parseInt(value); break;
+			case "-seed": seed = Long.parseLong(value); break;
+			case "-sprt":
+				String[] bounds = value.split(",");
+				if (bounds.length != 2) usage("Use -sprt elo0,elo1");
+				elo0 = Double.parseDouble(bounds[0]);
+				elo1 = Double.parseDouble(bounds[1]);
+				break;
+			default: usage("Unknown option "+arg);
+			}
+		}
+		if (players.size() < 2) usage("Need at least two players");
+		if (boards.isEmpty()) boards.add(new int[] {3, 3});
+	}
+
+	/** Parse a board such as "7x4" (size 7, 4 in a row) or "3". */
+	private static int[] parseBoard(String text) {
+		String[] parts = text.split("x");
+		int size = Integer.parseInt(parts[0]);
+		int win = (parts.length > 1) ? Integer.parseInt(parts[1]) : Math.min(size, 5);
+		return new int[] {size, win};
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: java tictactoe.sim.Tournament -players p1,p2,... [-mode roundrobin|gauntlet]"
+				+ " [-boards 3,4x3,7x4] [-games n] [-opening n] [-threads n] [-sprt elo0,elo1] [-seed n]");
+		System.err.println("Strategies: "+Strategies.NAMES);
+		System.exit(1);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Tournament tournament = new Tournament();
+		try {
+			tournament.parseArgs(args);
+			// check the options before starting threads
+			for(int[] board : tournament.boards) new Bitboard(board[0], board[1]);
+			for(String player : tournament.players) Strategies.create(player, 0);
+		} catch (IllegalArgumentException e) {
+			usage(e.getMessage());
+		}
+		StringBuilder boardNames = new StringBuilder();
+		for(int[] board : tournament.boards) boardNames.append(' ').append(board[0]).append('x').append(board[0])
+				.append('/').append(board[1]);
+		System.out.printf("%s, %d players, boards%s, up to %d games per pairing per board, %d threads\n",
+				tournament.gauntlet ? "Gauntlet" : "Round robin", tournament.players.size(),
+				boardNames, tournament.games, tournament.threads);
+		long start = System.nanoTime();
+		List<Pairing> pairings = tournament.run();
+		double seconds = (System.nanoTime() - start) / 1.0E9;
+		long total = 0;
+		for(Pairing p : pairings) total += p.games();
+		System.out.printf("%d games in %.2f sec\n\n", total, seconds);
+		tournament.report(pairings);
+	}
+}
@@ -1,14 +1,23 @@
 package util;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.layout.FlowPane;
 import javafx.stage.Stage;
+import util.events.BuildSceneEvent;
+import util.events.ShowSceneEvent;
 
 /**
  * A singleton class to manager showing scenes on a Stage.
@@ -19,15 +28,60 @@ import javafx.stage.Stage;
  * 
  * This class solves the problem of how to show different scenes
  * since a scene needs a reference to the Stage.
+ * 
+ * Scenes made by StageManager are built from a factory that creates
+ * the scene's root node. preloadAll() runs the factories in a background
+ * thread, so the FXML is loaded while the user is looking at the main
+ * scene. The Scene is then created on the FX application thread.
+ * showScene() never builds a scene on the FX thread: it waits for the
+ * scene to be ready and shows it then, so the UI is not blocked.
+ * 
+ * Scenes made by a factory are kept in a cache with at most maxScenes
+ * scenes. When the cache is full, the least recently shown scene is
+ * evicted and it is built again the next time it is shown.
+ * The games keep their model when the scene is evicted, so the new
+ * scene continues the same game. Scenes added with register() are
+ * never evicted, since StageManager cannot build them again.
+ * The limit can be set with -Dstagemanager.maxScenes=n.
+ * 
+ * Methods of StageManager must be called on the FX application thread.
  */
 public class StageManager {
 	private static StageManager instance;
+	/** Default number of scenes in the cache. */
+	public static final int DEFAULT_MAX_SCENES = 8;
 	private Stage stage;
+	/** Scenes added by register(). These are not evicted. */
+	private Map<String,Scene> registered;
+	/** Scenes made by factories, in order of use (least recently used first). */
 	private Map<String,Scene> scenes;
+	private int maxScenes = Integer.getInteger("stagemanager.maxScenes", DEFAULT_MAX_SCENES);
+	/** Statistics for the scene cache. */
+	private long hits;
+	private long misses;
+	private long evictions;
+	/** Factories to create the root node of scenes, by name. */
+	private Map<String,Supplier<Parent>> factories;
+	/** Scenes being built, by name. */
+	private Map<String,CompletableFuture<Scene>> loading;
+	/** Name of the scene most recently requested by showScene. */
+	private String requested;
+	/** Thread for loading FXML in the background. */
+	private final Executor loader = Executors.newSingleThreadExecutor( (runnable) -> {
+		Thread thread = new Thread(runnable, "scene-loader");
+		thread.setDaemon(true);
+		return thread;
+	});
 	
 	/* prevent object creation */
 	private StageManager() { 
-		scenes = new HashMap<>();
+		registered = new HashMap<>();
+		scenes = new LinkedHashMap<>(16, 0.75f, true);
+		factories = new LinkedHashMap<>();
+		loading = new HashMap<>();
+		// the apps keep the game model, so an evicted scene can be rebuilt with the same game
+		registerFactory("guessinggame", new guessinggame.GuessingGameApp()::initComponents);
+		registerFactory("tictactoe", new tictactoe.TicTacToeApp()::initComponents);
 	}
 	
 	/**
@@ -55,36 +109,203 @@ public class StageManager {
 	 * @param scene a Scene graph
 	 */
 	public void register(String sceneName, Scene scene) {
-		scenes.put(sceneName.toLowerCase(), scene);
+		registered.put(sceneName.toLowerCase(), scene);
+	}
+	
+	/**
+	 * Register a factory for a scene, so the scene can be preloaded.
+	 * The factory is called in a background thread, so it must not
+	 * use nodes that are already in a scene, or change state that the FX
+	 * thread uses. It can do that with Platform.runLater, which runs before
+	 * the scene is made and shown. It is called again if the
+	 * scene is evicted from the cache, so it should keep any state
+	 * that should survive, such as the game being played.
+	 * @param sceneName the name to use in the showScene(scenename) method
+	 * @param factory creates the root node of the scene
+	 */
+	public void registerFactory(String sceneName, Supplier<Parent> factory) {
+		factories.put(sceneName.toLowerCase(), factory);
+	}
+	
+	/**
+	 * Start building scenes that have a factory, in a background thread.
+	 * At most maxScenes scenes are built, in the order the factories were
+	 * registered, so preloading does not evict scenes.
+	 * Call this after the first scene is shown.
+	 */
+	public void preloadAll() {
+		int count = 0;
+		for(String sceneName : factories.keySet()) {
+			if (count++ >= maxScenes) break;
+			preload(sceneName);
+		}
 	}
 	
+	/**
+	 * Start building a scene in a background thread, if it is not already built.
+	 * A scene name with no factory gets an error scene, which is not cached.
+	 * @param sceneName name of the scene
+	 * @return a future that completes on the FX thread when the scene is ready
+	 */
+	public CompletableFuture<Scene> preload(String sceneName) {
+		final String name = sceneName.toLowerCase();
+		Scene scene = findScene(name);
+		if (scene != null) return CompletableFuture.completedFuture(scene);
+		CompletableFuture<Scene> future = loading.get(name);
+		if (future != null) return future;
+		Supplier<Parent> factory = factories.get(name);
+		// not a registered scene, so show the "unknown scene" scene.
+		// It is not cached, so a wrong name cannot evict a game.
+		if (factory == null) return CompletableFuture.completedFuture(makeScene(name));
+		future = CompletableFuture.supplyAsync( () -> buildRoot(name, factory), loader)
+				// create the Scene on the FX thread
+				.thenApplyAsync( (root) -> makeScene(name, root), Platform::runLater);
+		loading.put(name, future);
+		future.whenComplete( (result, ex) -> {
+			// called on the FX thread
+			loading.remove(name);
+			StartupProfiler.mark("preload "+name);
+			if (result != null) {
+				scenes.put(name, result);
+				evict();
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Show a scene on the stage. If the scene is still being built,
+	 * it is shown when it is ready and the FX thread is not blocked.
+	 * @param sceneName name of a registered scene
+	 */
 	public void showScene(String sceneName) {
 		sceneName = sceneName.toLowerCase();
-		Scene scene = scenes.get(sceneName);
-		if (scene == null) {
-			scene = makeScene(sceneName);
-			scenes.put(sceneName, scene);
+		requested = sceneName;
+		StartupProfiler.mark("showScene "+sceneName);
+		ShowSceneEvent event = new ShowSceneEvent();
+		event.begin();
+		event.scene = sceneName;
+		Scene scene = findScene(sceneName);
+		if (scene != null) {
+			hits++;
+			setScene(scene);
+			event.cacheHit = true;
+			event.succeeded = true;
+			event.commit();
+			return;
 		}
+		misses++;
+		final String name = sceneName;
+		preload(name).whenCompleteAsync( (result, ex) -> {
+			// the user may have chosen another scene while this one was loading
+			if (! name.equals(requested)) return;
+			if (result != null) setScene(result);
+			else setScene(errorScene("Could not load "+name+": "+ex.getMessage()));
+			event.succeeded = (result != null);
+			event.commit();
+		}, Platform::runLater);
+	}
+	
+	/** Run a factory to create the root node of a scene, and record how long it takes. */
+	private static Parent buildRoot(String sceneName, Supplier<Parent> factory) {
+		BuildSceneEvent event = new BuildSceneEvent();
+		event.begin();
+		Parent root = factory.get();
+		if (event.shouldCommit()) {
+			event.scene = sceneName;
+			event.succeeded = (root != null);
+			event.commit();
+		}
+		return root;
+	}
+	
+	/** @return a registered or cached scene, or null. A cached scene becomes the most recently used. */
+	private Scene findScene(String sceneName) {
+		Scene scene = registered.get(sceneName);
+		if (scene != null) return scene;
+		return scenes.get(sceneName);
+	}
+	
+	/** Remove the least recently used scenes until the cache is not over its limit. */
+	private void evict() {
+		Iterator<Scene> iter = scenes.values().iterator();
+		while (scenes.size() > maxScenes && iter.hasNext()) {
+			Scene scene = iter.next();
+			// never evict the scene that is showing
+			if (stage != null && scene == stage.getScene()) continue;
+			iter.remove();
+			evictions++;
+		}
+	}
+	
+	/**
+	 * Set the maximum number of scenes made by factories to keep.
+	 * Scenes over the limit are evicted now.
+	 * @param maxScenes the limit, at least 1
+	 */
+	public void setMaxScenes(int maxScenes) {
+		if (maxScenes < 1) throw new IllegalArgumentException("maxScenes must be at least 1");
+		this.maxScenes = maxScenes;
+		evict();
+	}
+	
+	public int getMaxScenes() {
+		return maxScenes;
+	}
+	
+	/** @return number of times showScene found the scene already built */
+	public long getHits() {
+		return hits;
+	}
+	
+	/** @return number of times showScene had to wait for a scene to be built */
+	public long getMisses() {
+		return misses;
+	}
+	
+	/** @return number of scenes removed from the cache */
+	public long getEvictions() {
+		return evictions;
+	}
+	
+	/** @return cache statistics as a string, for logging */
+	public String getCacheStats() {
+		return String.format("scenes %d/%d, hits %d, misses %d, evictions %d",
+				scenes.size(), maxScenes, hits, misses, evictions);
+	}
+	
+	private void setScene(Scene scene) {
+		// startup ends with the first pulse of the first scene the user chooses
+		StartupProfiler.markFirstPulse(scene, "first pulse of "+requested, true);
 		stage.setScene(scene);
 		stage.sizeToScene();
 		stage.show();
 	}
+	
+	/** Create the Scene for a root node from a factory. */
+	private Scene makeScene(String sceneName, Parent root) {
+		if (root == null) throw new IllegalStateException("factory did not create "+sceneName);
+		return new Scene(root);
+	}
+	
+	private Scene errorScene(String message) {
+		FlowPane root = new FlowPane();
+		Label label = new Label(message);
+		root.getChildren().add(label);
+		root.setAlignment(Pos.CENTER);
+		return new Scene(root);
+	}
 		
-	private Scene makeScene(String sceneName) {
-		switch(sceneName) {
-		case "guessinggame":
-			Parent root = new guessinggame.GuessingGameApp().initComponents();
-			return new Scene(root);
-		case "tictactoe":
-			Parent root2 = new tictactoe.TicTacToeApp().initComponents();
-			return new Scene(root2);
-		default:
-			FlowPane root3 = new FlowPane();
-			Label label = new Label("Unknown scenename "+sceneName);
-			root3.getChildren().add(label);
-			root3.setAlignment(Pos.CENTER);
-			return new Scene(root3);
-		}
+	/**
+	 * Create a new scene by name in the calling thread.
+	 * This is what preload does, without the background thread.
+	 * @param sceneName name of a game
+	 * @return a new Scene for the game
+	 */
+	Scene makeScene(String sceneName) {
+		Supplier<Parent> factory = factories.get(sceneName);
+		if (factory == null) return errorScene("Unknown scenename "+sceneName);
+		return makeScene(sceneName, buildRoot(sceneName, factory));
 	}
 
 }
@@ -0,0 +1,158 @@
+package util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+/**
+ * Measure where the time goes when the application starts.
+ *
+ * Code calls mark(phase) at the end of each phase of startup.
+ * The time is from System.nanoTime(), which is monotonic, and the report
+ * shows the time since the JVM started and since the previous mark.
+ * markFirstPulse() marks the first pulse of a scene, which is when
+ * its layout is done and it is about to be rendered for the first time.
+ *
+ * The profiler is off unless the application is run with
+ * <pre>
+ *   -Dstartup.profile=true         print the report on System.out
+ *   -Dstartup.profile=startup.csv  append the report to a CSV file
+ *   -Dstartup.exit=true            exit the application after the report
+ * </pre>
+ * Each run appends rows to the CSV file, so startup times can be
+ * compared over time. When the profiler is off, mark() does nothing.
+ *
+ * The report is written by finish(), or when the JVM exits.
+ * Marks after finish() are ignored. startup.exit is for measuring
+ * many launches, such as by the StartupBenchmark or a training run
+ * for a class data sharing archive.
+ */
+public final class StartupProfiler {
+	/** Where to write the report: "true" for System.out, else a file name. */
+	private static final String OUTPUT = System.getProperty("startup.profile");
+	/** True if the profiler was enabled by the startup.profile property. */
+	public static final boolean ENABLED = OUTPUT != null && ! OUTPUT.equalsIgnoreCase("false");
+	/** True if the application should exit after the report. */
+	public static final boolean EXIT = ENABLED && Boolean.getBoolean("startup.exit");
+	/** nanoTime when this class was initialized. */
+	private static final long ORIGIN = System.nanoTime();
+	/** Milliseconds from JVM start until ORIGIN. */
+	private static final long ORIGIN_UPTIME = ENABLED ? ManagementFactory.getRuntimeMXBean().getUptime() : 0;
+	private static final List<String> phases = new ArrayList<>();
+	private static final List<Long> times = new ArrayList<>();
+	private static boolean finished;
+
+	static {
+		if (ENABLED) {
+			// write the report even if no game is opened
+			Runtime.getRuntime().addShutdownHook(new Thread( () -> finish(false), "startup-profiler"));
+		}
+	}
+
+	/* prevent object creation */
+	private StartupProfiler() { }
+
+	/**
+	 * Record the end of a phase of startup.
+	 * This can be called from any thread.
+	 * @param phase description of what was just done
+	 */
+	public static void mark(String phase) {
+		if (! ENABLED) return;
+		long now = System.nanoTime();
+		synchronized (phases) {
+			if (finished) return;
+			phases.add(phase);
+			times.add(now);
+		}
+	}
+
+	/**
+	 * Record the first pulse of a scene after it is shown.
+	 * Call this on the FX thread before the scene is shown.
+	 * @param scene the scene to watch
+	 * @param phase description of the pulse
+	 * @param last if true, call finish() after the pulse is recorded
+	 */
+	public static void markFirstPulse(Scene scene, String phase, boolean last) {
+		if (! ENABLED || isFinished()) return;
+		Runnable listener = new Runnable() {
+			@Override
+			public void run() {
+				mark(phase);
+				// remove the listener after the pulse, not while the scene is running listeners
+				Platform.runLater( () -> scene.removePostLayoutPulseListener(this) );
+				if (last) finish();
+			}
+		};
+		scene.addPostLayoutPulseListener(listener);
+	}
+
+	/** @return true if the report was already written */
+	public static boolean isFinished() {
+		synchronized (phases) {
+			return finished;
+		}
+	}
+
+	/**
+	 * Stop recording and write the report. Only the first call writes a report.
+	 * If startup.exit is set, the application exits after the report.
+	 */
+	public static void finish() {
+		finish(EXIT);
+	}
+
+	private static void finish(boolean exit) {
+		if (! ENABLED) return;
+		List<String> lines = new ArrayList<>();
+		synchronized (phases) {
+			if (finished) return;
+			finished = true;
+			double previous = 0;
+			for(int k=0; k<phases.size(); k++) {
+				double elapsed = ORIGIN_UPTIME + (times.get(k) - ORIGIN) / 1.0E6;
+				lines.add(String.format(Locale.ROOT, "%.1f,%.1f,%s", elapsed, elapsed - previous, phases.get(k)));
+				previous = elapsed;
+			}
+		}
+		if (OUTPUT.equalsIgnoreCase("true")) printReport(lines);
+		else writeCsv(Paths.get(OUTPUT), lines);
+		if (exit) Platform.exit();
+	}
+
+	private static void printReport(List<String> lines) {
+		System.out.println("Startup profile (milliseconds since JVM start)");
+		System.out.printf("%10s %10s  %s%n", "elapsed", "duration", "end of phase");
+		for(String line : lines) {
+			String[] fields = line.split(",", 3);
+			System.out.printf("%10s %10s  %s%n", fields[0], fields[1], fields[2]);
+		}
+	}
+
+	/** Append the report to a CSV file. Each row starts with the time of this run. */
+	private static void writeCsv(Path file, List<String> lines) {
+		String run = Instant.now().toString();
+		List<String> rows = new ArrayList<>();
+		if (! Files.exists(file)) rows.add("run,elapsed_ms,phase_ms,phase");
+		for(String line : lines) rows.add(run + "," + line);
+		try {
+			Files.write(file, rows, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException ex) {
+			Logger.getLogger("StartupProfiler").log(Level.WARNING, "Could not write startup profile to "+file, ex);
+		}
+	}
+}
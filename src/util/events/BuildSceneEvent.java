@@ -0,0 +1,26 @@
+package util.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for building the root node of a scene
+ * with its factory. This runs in the scene-loader thread when a
+ * scene is preloaded, or in the caller's thread for makeScene.
+ */
+@Name("multigame.BuildScene")
+@Label("Build Scene")
+@Category({"Multigame", "Scenes"})
+@Description("Creating the nodes of a scene")
+@StackTrace(false)
+public class BuildSceneEvent extends Event {
+	@Label("Scene")
+	public String scene;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+}
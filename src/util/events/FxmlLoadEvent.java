@@ -0,0 +1,56 @@
+package util.events;
+
+import java.io.IOException;
+
+import javafx.fxml.FXMLLoader;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for loading an FXML file.
+ * Use load(loader) instead of loader.load() to record the event.
+ */
+@Name("multigame.FxmlLoad")
+@Label("FXML Load")
+@Category({"Multigame", "Scenes"})
+@Description("Loading a UI form with FXMLLoader, including the controller's initialize()")
+@StackTrace(false)
+public class FxmlLoadEvent extends Event {
+	@Label("Location")
+	public String location;
+
+	@Label("Controller")
+	public Class<?> controller;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+
+	/**
+	 * Load an FXML file and record how long it takes.
+	 * @param loader a loader with the location set
+	 * @return the root of the loaded object hierarchy
+	 * @throws IOException if loader.load() throws it
+	 */
+	public static <T> T load(FXMLLoader loader) throws IOException {
+		FxmlLoadEvent event = new FxmlLoadEvent();
+		event.begin();
+		boolean succeeded = false;
+		try {
+			T root = loader.load();
+			succeeded = true;
+			return root;
+		} finally {
+			if (event.shouldCommit()) {
+				event.location = String.valueOf(loader.getLocation());
+				Object controller = loader.getController();
+				if (controller != null) event.controller = controller.getClass();
+				event.succeeded = succeeded;
+				event.commit();
+			}
+		}
+	}
+}
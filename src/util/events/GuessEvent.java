@@ -0,0 +1,32 @@
+package util.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a guess in a guessing game.
+ * The input is not recorded for invalid guesses, since it can be any text.
+ */
+@Name("multigame.Guess")
+@Label("Guess")
+@Category({"Multigame", "Guessing Game"})
+@Description("A guess in a guessing game")
+@StackTrace(false)
+public class GuessEvent extends Event {
+	@Label("Guess")
+	@Description("The number guessed, or Long.MIN_VALUE for invalid input")
+	public long guess;
+
+	@Label("Result")
+	public String result;
+
+	@Label("Guess Count")
+	public int count;
+
+	@Label("Upper Bound")
+	public int upperBound;
+}
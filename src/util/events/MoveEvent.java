@@ -0,0 +1,46 @@
+package util.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for a move in a tic-tac-toe game.
+ * The duration is the whole move, including updating the view.
+ */
+@Name("multigame.Move")
+@Label("Move")
+@Category({"Multigame", "Tic-Tac-Toe"})
+@Description("A move in a tic-tac-toe game")
+@StackTrace(false)
+public class MoveEvent extends Event {
+	@Label("Board Size")
+	public int boardSize;
+
+	@Label("Win Length")
+	public int winLength;
+
+	@Label("Column")
+	public int col;
+
+	@Label("Row")
+	public int row;
+
+	@Label("Player")
+	public String player;
+
+	@Label("Win Check")
+	@Description("Time to place the piece and check whether it makes a line")
+	@Timespan(Timespan.NANOSECONDS)
+	public long winCheck;
+
+	@Label("Winner")
+	public String winner;
+
+	@Label("Game Over")
+	public boolean gameOver;
+}
@@ -0,0 +1,30 @@
+package util.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for StageManager.showScene.
+ * The duration is from the request until the scene is on the stage,
+ * so for a cache miss it includes waiting for the scene to be built.
+ */
+@Name("multigame.ShowScene")
+@Label("Show Scene")
+@Category({"Multigame", "Scenes"})
+@Description("A scene shown on the stage by StageManager")
+@StackTrace(false)
+public class ShowSceneEvent extends Event {
+	@Label("Scene")
+	public String scene;
+
+	@Label("Cache Hit")
+	@Description("True if the scene was already built")
+	public boolean cacheHit;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+}